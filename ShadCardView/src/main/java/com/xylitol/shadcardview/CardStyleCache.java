@@ -0,0 +1,262 @@
+package com.xylitol.shadcardview;
+
+import static com.xylitol.shadcardview.CornerVisibility.NONE;
+import static com.xylitol.shadcardview.CornerVisibility.toMask;
+import static com.xylitol.shadcardview.ShadowDirection.DIRECTION_TOP;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Color;
+import android.util.AttributeSet;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.WeakHashMap;
+
+/**
+ * declaration: the SCardView attributes resolved once per theme, default style attribute and
+ * style, so inflating a screen of identical cards parses the attributes of each distinct style
+ * once instead of once per card. Cards setting SCardView attributes directly in the layout can't
+ * share their values and are always parsed. Themes are matched by identity, not equals(): since
+ * API 24 two themes with the same applied styles are equal whatever their configuration, so a
+ * recreated activity would get the dimensions and colors of the old configuration. The styles
+ * of a theme are dropped when its configuration or its applied styles change. Resources and
+ * themes are held weakly, the styles of a finished activity go with them. Each Resources keeps
+ * the styles of its few most recently used themes, so the identity scan stays short even when
+ * every dialog or ContextThemeWrapper brings its own theme.
+ * time:
+ */
+final class CardStyleCache {
+
+    // the theme color the default card background is picked from
+    private static final int[] COLOR_BACKGROUND_ATTR = {android.R.attr.colorBackground};
+    // themes kept per Resources, the least recently used one is dropped past it
+    static final int MAX_THEMES = 8;
+
+    private static final Object sLock = new Object();
+    // Resources doesn't override equals(), unlike Theme, so the outer map is by identity
+    private static final WeakHashMap<Resources, ArrayList<ThemeStyles>> sStyles = new WeakHashMap<>();
+
+    private CardStyleCache() {
+    }
+
+    /**
+     * Returns the resolved attributes of a card, shared with the cards inflated before it when
+     * none of its attributes are set in the layout itself.
+     */
+    static Style obtain(Context context, AttributeSet attrs, int defStyleAttr) {
+        Resources.Theme theme = context.getTheme();
+        Resources resources = context.getResources();
+        if (theme == null || resources == null || !isCacheable(attrs)) {
+            return parse(context, attrs, defStyleAttr);
+        }
+        int styleRes = attrs != null ? attrs.getStyleAttribute() : 0;
+        Long key = ((long) defStyleAttr << 32) | (styleRes & 0xffffffffL);
+        synchronized (sLock) {
+            Style style = getStyles(resources, theme).get(key);
+            if (style != null) {
+                return style;
+            }
+        }
+        // parsed outside the lock, two threads inflating the same new style both parse it once
+        Style style = parse(context, attrs, defStyleAttr);
+        synchronized (sLock) {
+            getStyles(resources, theme).put(key, style);
+        }
+        return style;
+    }
+
+    /**
+     * Returns the styles resolved under the current configuration and applied styles of the
+     * theme, emptied first when either changed since they were resolved. Themes are kept most
+     * recently used first, at most {@link #MAX_THEMES} of them. Called with sLock held.
+     */
+    private static HashMap<Long, Style> getStyles(Resources resources, Resources.Theme theme) {
+        ArrayList<ThemeStyles> themes = sStyles.get(resources);
+        if (themes == null) {
+            themes = new ArrayList<>(1);
+            sStyles.put(resources, themes);
+        }
+        ThemeStyles found = null;
+        for (int i = 0; i < themes.size(); i++) {
+            Resources.Theme entryTheme = themes.get(i).theme.get();
+            if (entryTheme == theme) {
+                found = i == 0 ? themes.get(0) : themes.remove(i);
+                break;
+            }
+        }
+        if (found == null) {
+            found = new ThemeStyles(theme);
+            // the themes of finished activities first, then the least recently used one
+            for (Iterator<ThemeStyles> it = themes.iterator(); it.hasNext(); ) {
+                if (it.next().theme.get() == null) {
+                    it.remove();
+                }
+            }
+            if (themes.size() >= MAX_THEMES) {
+                themes.remove(themes.size() - 1);
+            }
+        }
+        if (themes.isEmpty() || themes.get(0) != found) {
+            themes.add(0, found);
+        }
+        found.validate(resources.getConfiguration(), theme.hashCode());
+        return found.styles;
+    }
+
+    /**
+     * Returns whether the attributes only come from styles and the theme, i.e. the layout doesn't
+     * set any SCardView attribute on the card itself.
+     */
+    private static boolean isCacheable(AttributeSet attrs) {
+        if (attrs == null) {
+            return true;
+        }
+        for (int i = 0, count = attrs.getAttributeCount(); i < count; i++) {
+            // styleable arrays are sorted by attribute id
+            if (Arrays.binarySearch(R.styleable.SCardView, attrs.getAttributeNameResource(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Style parse(Context context, AttributeSet attrs, int defStyleAttr) {
+        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.SCardView, defStyleAttr,
+                R.style.CardView);
+        try {
+            return new Style(context, a);
+        } finally {
+            a.recycle();
+        }
+    }
+
+    /**
+     * The styles resolved with one theme, and what they were resolved under.
+     */
+    private static final class ThemeStyles {
+        final WeakReference<Resources.Theme> theme;
+        final HashMap<Long, Style> styles = new HashMap<>();
+        private Configuration mConfiguration;
+        // on API 24+ the hash of the applied styles, it changes with Theme.applyStyle()
+        private int mThemeHash;
+
+        ThemeStyles(Resources.Theme theme) {
+            this.theme = new WeakReference<>(theme);
+            mThemeHash = theme.hashCode();
+        }
+
+        void validate(Configuration configuration, int themeHash) {
+            if (themeHash != mThemeHash || mConfiguration == null
+                    || !mConfiguration.equals(configuration)) {
+                styles.clear();
+                // copied, the resources update their configuration in place
+                mConfiguration = new Configuration(configuration);
+                mThemeHash = themeHash;
+            }
+        }
+    }
+
+    /**
+     * Resolved card attributes, immutable so any number of cards can share them.
+     */
+    static final class Style {
+        final ColorStateList backgroundColor;
+        final float radius;
+        final float elevation;
+        final float maxElevation;
+        final boolean useCompatPadding;
+        final boolean preventCornerOverlap;
+        final boolean useCornerArea;
+        final boolean useNativeShadow;
+        final int contentPaddingLeft;
+        final int contentPaddingTop;
+        final int contentPaddingRight;
+        final int contentPaddingBottom;
+        final int lightDirection;
+        final float lightAngle;
+        final float lightOffset;
+        final boolean useGlobalLight;
+        final int cornerVisibility;
+        final int cornerMask;
+        final float topLeftRadius;
+        final float topRightRadius;
+        final float bottomRightRadius;
+        final float bottomLeftRadius;
+        final int shadowStartColor;
+        final int shadowEndColor;
+        final int shadowRenderMode;
+        final boolean reduceOverdraw;
+        final int colorTransitionDuration;
+        final int minWidth;
+        final int minHeight;
+
+        Style(Context context, TypedArray a) {
+            if (a.hasValue(R.styleable.SCardView_cardBackgroundColor)) {
+                backgroundColor = a.getColorStateList(R.styleable.SCardView_cardBackgroundColor);
+            } else {
+                backgroundColor = ColorStateList.valueOf(getDefaultBackgroundColor(context));
+            }
+            radius = a.getDimension(R.styleable.SCardView_cardCornerRadius, 0f);
+            elevation = a.getDimension(R.styleable.SCardView_cardElevation, 0f);
+            maxElevation = Math.max(elevation, a.getDimension(R.styleable.SCardView_cardMaxElevation, 0f));
+            useCompatPadding = a.getBoolean(R.styleable.SCardView_cardUseCompatPadding, false);
+            preventCornerOverlap = a.getBoolean(R.styleable.SCardView_cardPreventCornerOverlap, true);
+            useCornerArea = a.getBoolean(R.styleable.SCardView_cardUseCornerArea, false);
+            useNativeShadow = a.getBoolean(R.styleable.SCardView_cardUseNativeShadow, false);
+            int defaultPadding = a.getDimensionPixelSize(R.styleable.SCardView_contentPadding, 0);
+            contentPaddingLeft = a.getDimensionPixelSize(R.styleable.SCardView_contentPaddingLeft,
+                    defaultPadding);
+            contentPaddingTop = a.getDimensionPixelSize(R.styleable.SCardView_contentPaddingTop,
+                    defaultPadding);
+            contentPaddingRight = a.getDimensionPixelSize(R.styleable.SCardView_contentPaddingRight,
+                    defaultPadding);
+            contentPaddingBottom = a.getDimensionPixelSize(R.styleable.SCardView_contentPaddingBottom,
+                    defaultPadding);
+            lightDirection = a.getInt(R.styleable.SCardView_cardLightDirection, DIRECTION_TOP);
+            lightAngle = a.getFloat(R.styleable.SCardView_cardLightAngle, Float.NaN);
+            lightOffset = a.getDimension(R.styleable.SCardView_cardLightOffset, -1f);
+            useGlobalLight = a.getBoolean(R.styleable.SCardView_cardUseGlobalLight, false);
+            cornerVisibility = a.getInt(R.styleable.SCardView_cardCornerVisibility, NONE);
+            cornerMask = a.getInt(R.styleable.SCardView_cardCornerMask, toMask(cornerVisibility));
+            topLeftRadius = a.getDimension(R.styleable.SCardView_cardTopLeftRadius, radius);
+            topRightRadius = a.getDimension(R.styleable.SCardView_cardTopRightRadius, radius);
+            bottomRightRadius = a.getDimension(R.styleable.SCardView_cardBottomRightRadius, radius);
+            bottomLeftRadius = a.getDimension(R.styleable.SCardView_cardBottomLeftRadius, radius);
+            shadowStartColor = a.getColor(R.styleable.SCardView_cardShadowStartColor, -1);
+            shadowEndColor = a.getColor(R.styleable.SCardView_cardShadowEndColor, -1);
+            shadowRenderMode = a.getInt(R.styleable.SCardView_cardShadowRenderMode,
+                    SRoundRectDrawableWithShadow.RENDER_MODE_VECTOR);
+            reduceOverdraw = a.getBoolean(R.styleable.SCardView_cardReduceOverdraw, false);
+            colorTransitionDuration = a.getInt(R.styleable.SCardView_cardColorTransitionDuration, 0);
+            minWidth = a.getDimensionPixelSize(R.styleable.SCardView_android_minWidth, 0);
+            minHeight = a.getDimensionPixelSize(R.styleable.SCardView_android_minHeight, 0);
+        }
+
+        boolean hasUniformRadii() {
+            return topLeftRadius == radius && topRightRadius == radius
+                    && bottomRightRadius == radius && bottomLeftRadius == radius;
+        }
+
+        /**
+         * There isn't a background color set, so we compute one based on the theme: our own light
+         * color on a light theme colorBackground, otherwise our dark one.
+         */
+        private static int getDefaultBackgroundColor(Context context) {
+            TypedArray aa = context.obtainStyledAttributes(COLOR_BACKGROUND_ATTR);
+            int themeColorBackground = aa.getColor(0, 0);
+            aa.recycle();
+
+            float[] hsv = new float[3];
+            Color.colorToHSV(themeColorBackground, hsv);
+            return context.getResources().getColor(hsv[2] > 0.5f
+                    ? R.color.sl_cardview_light_background : R.color.sl_cardview_dark_background);
+        }
+    }
+}
@@ -1,15 +1,43 @@
 package com.xylitol.shadcardview;
 
 /**
- * declaration:
+ * declaration: the fixed combinations of cardCornerVisibility, and the corner bitmask they resolve
+ * to. A set bit is a visible, rounded corner, the other corners are square.
  * time:
  */
 public class CornerVisibility {
-    public static int NOLEFTCORNER = 1;
-    public static int NORIGHTCORNER = 2;
-    public static int NOTOPCORNER = 3;
-    public static int NOBOTTOMCORNER = 4;
-    public static int NOLT_RBCORNER = 5;
-    public static int NORT_LBCORNER = 6;
-    public static int NONE = 7;
+    public static final int NOLEFTCORNER = 1;
+    public static final int NORIGHTCORNER = 2;
+    public static final int NOTOPCORNER = 3;
+    public static final int NOBOTTOMCORNER = 4;
+    public static final int NOLT_RBCORNER = 5;
+    public static final int NORT_LBCORNER = 6;
+    public static final int NONE = 7;
+
+    public static final int CORNER_TOP_LEFT = 1;
+    public static final int CORNER_TOP_RIGHT = 1 << 1;
+    public static final int CORNER_BOTTOM_RIGHT = 1 << 2;
+    public static final int CORNER_BOTTOM_LEFT = 1 << 3;
+    public static final int CORNER_ALL = CORNER_TOP_LEFT | CORNER_TOP_RIGHT | CORNER_BOTTOM_RIGHT
+            | CORNER_BOTTOM_LEFT;
+
+    /**
+     * Returns the corners left visible by one of the constants above, unknown values keep them all.
+     */
+    public static int toMask(int cornerVisibility) {
+        if (cornerVisibility == NOLEFTCORNER) {
+            return CORNER_TOP_RIGHT | CORNER_BOTTOM_RIGHT;
+        } else if (cornerVisibility == NORIGHTCORNER) {
+            return CORNER_TOP_LEFT | CORNER_BOTTOM_LEFT;
+        } else if (cornerVisibility == NOTOPCORNER) {
+            return CORNER_BOTTOM_RIGHT | CORNER_BOTTOM_LEFT;
+        } else if (cornerVisibility == NOBOTTOMCORNER) {
+            return CORNER_TOP_LEFT | CORNER_TOP_RIGHT;
+        } else if (cornerVisibility == NOLT_RBCORNER) {
+            return CORNER_TOP_RIGHT | CORNER_BOTTOM_LEFT;
+        } else if (cornerVisibility == NORT_LBCORNER) {
+            return CORNER_TOP_LEFT | CORNER_BOTTOM_RIGHT;
+        }
+        return CORNER_ALL;
+    }
 }
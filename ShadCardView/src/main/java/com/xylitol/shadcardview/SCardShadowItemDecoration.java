@@ -0,0 +1,210 @@
+package com.xylitol.shadcardview;
+
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_COUNT;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * declaration: draws the shadows of every {@link SCardView} item of a RecyclerView in a single
+ * pass, before the items themselves. Cards sharing the same shaders are drawn one after another so
+ * the paints only switch shaders between groups, and shadows never paint under the surface of
+ * another card. Attach it with {@link #attachToRecyclerView} and remove it with
+ * attachToRecyclerView(null), not with add/removeItemDecoration: the item views must be the
+ * SCardViews themselves, they hand their shadow to the decoration while they are attached to the
+ * list and take it back when they are detached or the decoration is removed. Cards using native
+ * shadows, cards with their shadow turned off and cards scaled or rotated keep drawing their own.
+ * time:
+ */
+public class SCardShadowItemDecoration extends RecyclerView.ItemDecoration {
+
+    // one corner and edge paint per corner, corners may have their own radius
+    private final Paint[] mCornerShadowPaints = new Paint[CORNER_COUNT];
+    private final Paint[] mEdgeShadowPaints = new Paint[CORNER_COUNT];
+    private final ShadowCache.Entry[] mCurrentComponents = new ShadowCache.Entry[CORNER_COUNT];
+
+    // visible cards of the current pass, kept to avoid allocating on every frame
+    private final ArrayList<SRoundRectDrawableWithShadow> mShadows = new ArrayList<>();
+    private final ArrayList<View> mCards = new ArrayList<>();
+
+    private RecyclerView mRecyclerView;
+    private final RecyclerView.OnChildAttachStateChangeListener mChildAttachListener =
+            new RecyclerView.OnChildAttachStateChangeListener() {
+                @Override
+                public void onChildViewAttachedToWindow(@NonNull View view) {
+                    takeShadow(view, true);
+                }
+
+                @Override
+                public void onChildViewDetachedFromWindow(@NonNull View view) {
+                    takeShadow(view, false);
+                }
+            };
+
+    public SCardShadowItemDecoration() {
+        SRoundRectDrawableWithShadow.initShadowPaints(mCornerShadowPaints, mEdgeShadowPaints);
+    }
+
+    /**
+     * Draws the card shadows of the given RecyclerView, detaching from the previous one first.
+     * Pass null to remove the decoration, the cards then draw their own shadow again.
+     */
+    public void attachToRecyclerView(@Nullable RecyclerView recyclerView) {
+        if (mRecyclerView == recyclerView) {
+            return;
+        }
+        if (mRecyclerView != null) {
+            mRecyclerView.removeItemDecoration(this);
+            mRecyclerView.removeOnChildAttachStateChangeListener(mChildAttachListener);
+            takeShadows(mRecyclerView, false);
+        }
+        mRecyclerView = recyclerView;
+        if (recyclerView != null) {
+            recyclerView.addItemDecoration(this);
+            recyclerView.addOnChildAttachStateChangeListener(mChildAttachListener);
+            // the cards already attached won't be reported to the listener
+            takeShadows(recyclerView, true);
+        }
+    }
+
+    private static void takeShadows(RecyclerView recyclerView, boolean take) {
+        for (int i = 0, count = recyclerView.getChildCount(); i < count; i++) {
+            takeShadow(recyclerView.getChildAt(i), take);
+        }
+    }
+
+    /**
+     * Sets whether the decoration draws the shadow of a card. It stays set until the card is
+     * detached, only scaling or rotating it hands the shadow back.
+     */
+    private static void takeShadow(View child, boolean take) {
+        if (child instanceof SCardView) {
+            ((SCardView) child).setShadowDrawnByParent(take && !hasTransform(child));
+        }
+    }
+
+    @Override
+    public void getItemOffsets(@NonNull Rect outRect, @NonNull View view, @NonNull RecyclerView parent,
+                               @NonNull RecyclerView.State state) {
+        // the card keeps its padding, only the shadow moves to onDraw
+        outRect.setEmpty();
+    }
+
+    @Override
+    public void onDraw(@NonNull Canvas c, @NonNull RecyclerView parent, @NonNull RecyclerView.State state) {
+        if (parent != mRecyclerView) {
+            // added with addItemDecoration, the cards kept their shadows
+            return;
+        }
+        int count = parent.getChildCount();
+        for (int i = 0; i < count; i++) {
+            View child = parent.getChildAt(i);
+            if (!(child instanceof SCardView)) {
+                continue;
+            }
+            // only changes, and invalidates the card, when it was scaled or rotated since
+            takeShadow(child, true);
+            SRoundRectDrawableWithShadow shadow = ((SCardView) child).getShadowDrawable();
+            if (shadow != null && shadow.getShadowDrawnByParent() && shadow.getDrawShadow()
+                    && child.getVisibility() == View.VISIBLE) {
+                mShadows.add(shadow);
+                mCards.add(child);
+            }
+        }
+        if (mShadows.isEmpty()) {
+            return;
+        }
+
+        int saved = c.save();
+        // neighbouring cards cover each other's shadows, never draw under an opaque card surface
+        for (int i = 0; i < mCards.size(); i++) {
+            View card = mCards.get(i);
+            SRoundRectDrawableWithShadow shadow = mShadows.get(i);
+            if (card.getAlpha() == 1f && shadow.isSurfaceOpaque()) {
+                clipOutSurface(c, card, shadow);
+            }
+        }
+        sortByComponents();
+        for (int i = 0; i < mShadows.size(); i++) {
+            SRoundRectDrawableWithShadow shadow = mShadows.get(i);
+            View card = mCards.get(i);
+            for (int corner = 0; corner < CORNER_COUNT; corner++) {
+                ShadowCache.Entry components = shadow.getShadowComponents(corner);
+                if (components != mCurrentComponents[corner]) {
+                    mCurrentComponents[corner] = components;
+                    mCornerShadowPaints[corner].setShader(components.cornerShader);
+                    mEdgeShadowPaints[corner].setShader(components.edgeShader);
+                }
+            }
+            setAlpha((int) (card.getAlpha() * 255));
+            int cardSaved = c.save();
+            c.translate(card.getLeft() + card.getTranslationX(), card.getTop() + card.getTranslationY());
+            shadow.drawShadow(c, mCornerShadowPaints, mEdgeShadowPaints);
+            c.restoreToCount(cardSaved);
+        }
+        c.restoreToCount(saved);
+        mShadows.clear();
+        mCards.clear();
+        // don't keep evicted components alive until the next pass
+        Arrays.fill(mCurrentComponents, null);
+    }
+
+    /**
+     * Returns whether the card is scaled or rotated, its shadow then has to follow the card's
+     * own transform. Translations are applied when drawing.
+     */
+    private static boolean hasTransform(View card) {
+        return card.getScaleX() != 1f || card.getScaleY() != 1f || card.getRotation() != 0f
+                || card.getRotationX() != 0f || card.getRotationY() != 0f;
+    }
+
+    /**
+     * Clips out the part of the card surface that is always opaque, a cross that stays clear of
+     * the rounded corners where the card's own shadow shows through. The largest radius keeps it
+     * clear of every corner.
+     */
+    private void clipOutSurface(Canvas c, View card, SRoundRectDrawableWithShadow shadow) {
+        RectF bounds = shadow.getCardRectSize();
+        float radius = shadow.getCornerRadius();
+        float dx = card.getLeft() + card.getTranslationX() + shadow.getMoveX();
+        float dy = card.getTop() + card.getTranslationY() + shadow.getMoveY();
+        SRoundRectDrawableWithShadow.clipOutRect(c, bounds.left + dx, bounds.top + dy + radius,
+                bounds.right + dx, bounds.bottom + dy - radius);
+        SRoundRectDrawableWithShadow.clipOutRect(c, bounds.left + dx + radius, bounds.top + dy,
+                bounds.right + dx - radius, bounds.bottom + dy);
+    }
+
+    private void sortByComponents() {
+        // insertion sort keeps the card list in step and doesn't allocate, item counts are small.
+        // Equal components end up next to each other, their order doesn't matter.
+        for (int i = 1; i < mShadows.size(); i++) {
+            SRoundRectDrawableWithShadow shadow = mShadows.get(i);
+            View card = mCards.get(i);
+            int key = System.identityHashCode(shadow.getShadowComponents(0));
+            int j = i - 1;
+            while (j >= 0 && System.identityHashCode(mShadows.get(j).getShadowComponents(0)) > key) {
+                mShadows.set(j + 1, mShadows.get(j));
+                mCards.set(j + 1, mCards.get(j));
+                j--;
+            }
+            mShadows.set(j + 1, shadow);
+            mCards.set(j + 1, card);
+        }
+    }
+
+    private void setAlpha(int alpha) {
+        for (int i = 0; i < CORNER_COUNT; i++) {
+            mCornerShadowPaints[i].setAlpha(alpha);
+            mEdgeShadowPaints[i].setAlpha(alpha);
+        }
+    }
+}
@@ -3,27 +3,28 @@ package com.xylitol.shadcardview;
 import static com.xylitol.shadcardview.CornerVisibility.*;
 import static com.xylitol.shadcardview.ShadowDirection.*;
 
-import android.annotation.SuppressLint;
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.ColorStateList;
-import android.content.res.TypedArray;
-import android.graphics.Color;
 import android.graphics.Rect;
-import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.support.annotation.ColorInt;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.AttributeSet;
-import android.util.Pair;
 import android.view.Gravity;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
 import android.widget.FrameLayout;
 
 /**
- * declaration:
+ * declaration: cards keep no mutable static state of their own, everything they share goes
+ * through caches guarded by a lock, so they can be inflated and configured on a worker thread,
+ * e.g. by AsyncLayoutInflater, before being attached on the UI thread.
  * time:
  */
 public class SCardView extends FrameLayout {
@@ -40,9 +41,7 @@ public class SCardView extends FrameLayout {
         init(context, attrs, defStyleAttr);
     }
 
-    @SuppressLint("ResourceType")
-    private int[] COLOR_BACKGROUND_ATTR = getResources().getIntArray(android.R.attr.colorBackground);
-    private int DEFAULT_CHILD_GRAVITY = Gravity.TOP | Gravity.START;
+    private static final int DEFAULT_CHILD_GRAVITY = Gravity.TOP | Gravity.START;
     private SCardViewImpl IMPL;
 
     private boolean mCompatPadding = false;
@@ -65,9 +64,68 @@ public class SCardView extends FrameLayout {
     int mUserSetMinWidth = 0;
 
     int mUserSetMinHeight = 0;
+    // minimum size the shadow needs, last given to setMinWidthHeightInternal
+    private int mShadowMinWidth = 0;
+    private int mShadowMinHeight = 0;
     Rect mContentPadding = new Rect();
     Rect mShadowBounds = new Rect();
 
+    /**
+     * Nesting depth of {@link #edit()} batches. While it is positive padding, minimum size and
+     * background invalidation are only recorded, {@link Editor#apply()} flushes them once.
+     */
+    private int mBatchDepth = 0;
+    private boolean mPendingPaddingUpdate = false;
+    private boolean mPendingInvalidate = false;
+
+    private ValueAnimator mElevationAnimator = null;
+
+    /**
+     * Minimum size the shadow needs, -1 until the next measure pass computes it. Every radius,
+     * elevation or padding change goes through {@link SCardViewImpl#updatePadding}, which resets it.
+     */
+    private int mMinWidth = -1;
+    private int mMinHeight = -1;
+    private static final double SQRT_2 = Math.sqrt(2.0);
+
+    // shadow offset and corner radius the content insets below were computed from
+    private float mLayoutMoveX = Float.NaN;
+    private float mLayoutMoveY = Float.NaN;
+    private float mLayoutCornerRadius = Float.NaN;
+    private float mContentMoveX;
+    private float mContentMoveY;
+    private double mCornerInset;
+
+    // the card's own light, restored when the global light goes away
+    private int mLightDirection = DIRECTION_TOP;
+    private float mLightAngle = Float.NaN;
+    private boolean mUseGlobalLight = false;
+    private final int[] mWindowLocation = new int[2];
+    // window location the global light angle was computed at
+    private int mLightLocationX = Integer.MIN_VALUE;
+    private int mLightLocationY = Integer.MIN_VALUE;
+    private boolean mGlobalLightRegistered = false;
+
+    // scrolling moves the card on screen without a layout pass
+    private final ViewTreeObserver.OnPreDrawListener mGlobalLightPreDrawListener =
+            new ViewTreeObserver.OnPreDrawListener() {
+                @Override
+                public boolean onPreDraw() {
+                    getLocationInWindow(mWindowLocation);
+                    if (mWindowLocation[0] != mLightLocationX || mWindowLocation[1] != mLightLocationY) {
+                        updateGlobalLight();
+                    }
+                    return true;
+                }
+            };
+
+    private final ShadowLight.Observer mGlobalLightObserver = new ShadowLight.Observer() {
+        @Override
+        public void onLightChanged() {
+            updateGlobalLight();
+        }
+    };
+
     private SCardViewDelegate mCardViewDelegate = new SCardViewDelegate() {
         private Drawable mCardBackground = null;
 
@@ -94,6 +152,11 @@ public class SCardView extends FrameLayout {
 
         @Override
         public void setShadowPadding(int left, int top, int right, int bottom) {
+            invalidateMeasureCache();
+            if (mBatchDepth > 0) {
+                mPendingPaddingUpdate = true;
+                return;
+            }
             mShadowBounds.set(left, top, right, bottom);
             SCardView.this.setPadding(left + mContentPadding.left, top + mContentPadding.top,
                     right + mContentPadding.right, bottom + mContentPadding.bottom);
@@ -101,12 +164,14 @@ public class SCardView extends FrameLayout {
 
         @Override
         public void setMinWidthHeightInternal(int width, int height) {
-            if (width > mUserSetMinWidth) {
-                SCardView.this.setMinimumWidth(width);
-            }
-            if (height > mUserSetMinHeight) {
-                SCardView.this.setMinimumHeight(height);
+            invalidateMeasureCache();
+            if (mBatchDepth > 0) {
+                mPendingPaddingUpdate = true;
+                return;
             }
+            mShadowMinWidth = width;
+            mShadowMinHeight = height;
+            updateMinimumSize();
         }
 
         @Override
@@ -116,65 +181,50 @@ public class SCardView extends FrameLayout {
     };
 
     private void init(Context context, AttributeSet attrs, int defStyleAttr) {
-        TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.SCardView, defStyleAttr,
-                R.style.CardView);
-
-        ColorStateList backgroundColor = null;
-        if (a.hasValue(R.styleable.SCardView_cardBackgroundColor)) {
-            backgroundColor = a.getColorStateList(R.styleable.SCardView_cardBackgroundColor);
-        } else {
-            // There isn't one set, so we'll compute one based on the theme
-            TypedArray aa = getContext().obtainStyledAttributes(COLOR_BACKGROUND_ATTR);
-            int themeColorBackground = aa.getColor(0, 0);
-            aa.recycle();
-
-            // If the theme colorBackground is light, use our own light color, otherwise dark
-            float[] hsv = new float[3];
-            Color.colorToHSV(themeColorBackground, hsv);
-            if (hsv[2] > 0.5f) {
-                backgroundColor = ColorStateList.valueOf(getResources().getColor(R.color.sl_cardview_light_background));
-            } else {
-                backgroundColor = ColorStateList.valueOf(getResources().getColor(R.color.sl_cardview_dark_background));
-            }
-        }
-        float radius = a.getDimension(R.styleable.SCardView_cardCornerRadius, 0f);
-        float elevation = a.getDimension(R.styleable.SCardView_cardElevation, 0f);
-        float maxElevation = a.getDimension(R.styleable.SCardView_cardMaxElevation, 0f);
-        mCompatPadding = a.getBoolean(R.styleable.SCardView_cardUseCompatPadding, false);
-        mPreventCornerOverlap = a.getBoolean(R.styleable.SCardView_cardPreventCornerOverlap, true);
-        mUseCornerArea = a.getBoolean(R.styleable.SCardView_cardUseCornerArea, false);
-        int defaultPadding = a.getDimensionPixelSize(R.styleable.SCardView_contentPadding, 0);
-        mContentPadding.left = a.getDimensionPixelSize(R.styleable.SCardView_contentPaddingLeft,
-                defaultPadding);
-        mContentPadding.top = a.getDimensionPixelSize(R.styleable.SCardView_contentPaddingTop,
-                defaultPadding);
-        mContentPadding.right = a.getDimensionPixelSize(R.styleable.SCardView_contentPaddingRight,
-                defaultPadding);
-        mContentPadding.bottom = a.getDimensionPixelSize(R.styleable.SCardView_contentPaddingBottom,
-                defaultPadding);
-        if (elevation > maxElevation) {
-            maxElevation = elevation;
-        }
-        int direction = a.getInt(R.styleable.SCardView_cardLightDirection, DIRECTION_TOP);
-        int cardCornerVisibility = a.getInt(R.styleable.SCardView_cardCornerVisibility, NONE);
-        int shadowStartColor = a.getColor(R.styleable.SCardView_cardShadowStartColor, -1);
-        int shadowEndColor = a.getColor(R.styleable.SCardView_cardShadowEndColor, -1);
-        mUserSetMinWidth = a.getDimensionPixelSize(R.styleable.SCardView_android_minWidth, 0);
-        mUserSetMinHeight = a.getDimensionPixelSize(R.styleable.SCardView_android_minHeight, 0);
-        a.recycle();
-        if (Build.VERSION.SDK_INT >= 17) {
-            if (cardCornerVisibility == NONE)
-                IMPL = new SCardViewApi17Impl();
-            else
-                IMPL = new SCardViewBaseImpl();
+        // shared by every card inflated with the same theme and style
+        CardStyleCache.Style style = CardStyleCache.obtain(context, attrs, defStyleAttr);
+        mCompatPadding = style.useCompatPadding;
+        mPreventCornerOverlap = style.preventCornerOverlap;
+        mUseCornerArea = style.useCornerArea;
+        mContentPadding.set(style.contentPaddingLeft, style.contentPaddingTop,
+                style.contentPaddingRight, style.contentPaddingBottom);
+        mUserSetMinWidth = style.minWidth;
+        mUserSetMinHeight = style.minHeight;
+        mLightDirection = style.lightDirection;
+        mLightAngle = style.lightAngle;
+        mUseGlobalLight = style.useGlobalLight;
+        boolean uniformRadii = style.hasUniformRadii();
+        if (style.useNativeShadow && SCardViewApi21Impl.canUseNativeShadow(style.lightDirection,
+                style.lightAngle, style.useGlobalLight, style.cornerMask, uniformRadii,
+                style.shadowStartColor, style.shadowEndColor)) {
+            IMPL = new SCardViewApi21Impl();
+        } else if (Build.VERSION.SDK_INT >= 17) {
+            IMPL = new SCardViewApi17Impl();
         } else {
             IMPL = new SCardViewBaseImpl();
         }
 
-        IMPL.initStatic();
-
-        IMPL.initialize(mCardViewDelegate, context, backgroundColor, radius,
-                elevation, maxElevation, direction, cardCornerVisibility, shadowStartColor, shadowEndColor);
+        IMPL.initialize(mCardViewDelegate, context, style.backgroundColor, style.radius,
+                style.elevation, style.maxElevation, style.lightDirection, style.cornerVisibility,
+                style.shadowStartColor, style.shadowEndColor);
+        if (style.cornerMask != toMask(style.cornerVisibility)) {
+            IMPL.setCornerMask(mCardViewDelegate, style.cornerMask);
+        }
+        if (!uniformRadii) {
+            IMPL.setCornerRadii(mCardViewDelegate, style.topLeftRadius, style.topRightRadius,
+                    style.bottomRightRadius, style.bottomLeftRadius);
+        }
+        if (!Float.isNaN(style.lightAngle)) {
+            IMPL.setLightAngle(mCardViewDelegate, style.lightAngle);
+        }
+        if (style.lightOffset >= 0f) {
+            IMPL.setLightOffset(mCardViewDelegate, style.lightOffset);
+        }
+        IMPL.setShadowRenderMode(mCardViewDelegate, style.shadowRenderMode);
+        setReduceOverdraw(style.reduceOverdraw);
+        if (style.colorTransitionDuration > 0) {
+            setColorTransitionDuration(style.colorTransitionDuration);
+        }
     }
 
     @Override
@@ -191,7 +241,7 @@ public class SCardView extends FrameLayout {
      * @return `true` if CardView adds inner padding on platforms Lollipop and after to
      * have same dimensions with platforms before Lollipop.
      */
-    public Boolean getUseCompatPadding() {
+    public boolean getUseCompatPadding() {
         return mCompatPadding;
     }
 
@@ -213,13 +263,21 @@ public class SCardView extends FrameLayout {
      *                         platforms Lollipop and above.
      * @attr ref android.support.v7.cardview.R.styleable#CardView_cardUseCompatPadding
      */
-    public void setUseCompatPadding(Boolean useCompatPadding) {
+    public void setUseCompatPadding(boolean useCompatPadding) {
         if (mCompatPadding != useCompatPadding) {
             mCompatPadding = useCompatPadding;
             IMPL.onCompatPaddingChanged(mCardViewDelegate);
         }
     }
 
+    /**
+     * @deprecated use {@link #setUseCompatPadding(boolean)}.
+     */
+    @Deprecated
+    public void setUseCompatPadding(Boolean useCompatPadding) {
+        setUseCompatPadding(useCompatPadding.booleanValue());
+    }
+
     /**
      * Sets the padding between the Card's edges and the children of CardView.
      * <p>
@@ -244,58 +302,62 @@ public class SCardView extends FrameLayout {
 
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
-        int updateWidthMeasureSpec = widthMeasureSpec;
-        int updateHeightMeasureSpec = heightMeasureSpec;
-        int widthMode = MeasureSpec.getMode(widthMeasureSpec);
-        if (widthMode == MeasureSpec.EXACTLY || widthMode == MeasureSpec.AT_MOST) {
-            int minWidth = (int) Math.ceil(IMPL.getMinWidth(mCardViewDelegate));
-            int width = MeasureSpec.getSize(widthMeasureSpec);
-            updateWidthMeasureSpec = MeasureSpec.makeMeasureSpec(Math.min(minWidth, width), widthMode);
-        } else if (widthMode == MeasureSpec.UNSPECIFIED) {
-            // Do nothing
-        }
-
-        int heightMode = MeasureSpec.getMode(heightMeasureSpec);
-        if (heightMode == MeasureSpec.EXACTLY || heightMode == MeasureSpec.AT_MOST) {
-            int minHeight = (int) Math.ceil(IMPL.getMinHeight(mCardViewDelegate));
-            int height = MeasureSpec.getSize(heightMeasureSpec);
-            updateWidthMeasureSpec = MeasureSpec.makeMeasureSpec(Math.min(minHeight, height), widthMode);
-        } else if (widthMode == MeasureSpec.UNSPECIFIED) {
-            // Do nothing
+        if (mMinWidth < 0) {
+            mMinWidth = (int) Math.ceil(IMPL.getMinWidth(mCardViewDelegate));
+            mMinHeight = (int) Math.ceil(IMPL.getMinHeight(mCardViewDelegate));
         }
-
+        int updateWidthMeasureSpec = applyMinSize(widthMeasureSpec, mMinWidth);
+        int updateHeightMeasureSpec = applyMinSize(heightMeasureSpec, mMinHeight);
         super.onMeasure(updateWidthMeasureSpec, updateHeightMeasureSpec);
     }
 
+    /**
+     * Makes a bounded spec at least as large as the card needs to draw its shadow.
+     */
+    private static int applyMinSize(int measureSpec, int minSize) {
+        int mode = MeasureSpec.getMode(measureSpec);
+        if (mode == MeasureSpec.UNSPECIFIED) {
+            return measureSpec;
+        }
+        int size = MeasureSpec.getSize(measureSpec);
+        return size >= minSize ? measureSpec : MeasureSpec.makeMeasureSpec(minSize, mode);
+    }
+
+    /**
+     * Drops the cached minimum size after radius, shadow or padding changed.
+     */
+    private void invalidateMeasureCache() {
+        mMinWidth = -1;
+        mMinHeight = -1;
+    }
+
     @Override
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        if (mUseGlobalLight) {
+            // laid out in place, the content below follows the new offsets without another pass
+            applyGlobalLight();
+        }
         layoutChildren(left, top, right, bottom, false /* no force left gravity */);
     }
 
-    private void layoutChildren(int left, int top, int right, int bottom, Boolean forceLeftGravity) {
+    private void layoutChildren(int left, int top, int right, int bottom, boolean forceLeftGravity) {
         int count = getChildCount();
-        SRoundRectDrawableWithShadow bg = (SRoundRectDrawableWithShadow) IMPL.getShadowBackground(mCardViewDelegate);
-        RectF rectF = bg.getCardRectSize();
-        Pair<Float, Float> movePair = bg.getMoveDistance();
-        Float cornerRadius = bg.getCornerRadius();
-        double iex = (cornerRadius - (Math.sqrt(2.0) * cornerRadius) / 2 + 0.5f);
         int parentLeft;
         int parentRight;
         int parentTop;
         int parentBottom;
-        if (movePair != null) {
-            float verticalMove = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? movePair.second : 0f;
-            float horizontalMove = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? movePair.first : 0f;
-            parentLeft = (int) horizontalMove;
-            parentRight = (int) (right - left + horizontalMove);
-            parentTop = (int) verticalMove;
-            parentBottom = (int) (bottom - top + verticalMove);
+        // native shadows don't move the card, the content simply sits inside the padding
+        if (updateContentInsets()) {
+            parentLeft = (int) mContentMoveX;
+            parentRight = (int) (right - left + mContentMoveX);
+            parentTop = (int) mContentMoveY;
+            parentBottom = (int) (bottom - top + mContentMoveY);
             //控制边角区域是否显示内容
             if (!mUseCornerArea) {
-                parentLeft += iex;
-                parentTop += iex;
-                parentRight -= iex;
-                parentBottom -= iex;
+                parentLeft += mCornerInset;
+                parentTop += mCornerInset;
+                parentRight -= mCornerInset;
+                parentBottom -= mCornerInset;
             }
             //内容显示区域修正，防止内容显示不全
             if (parentLeft < getPaddingLeft())
@@ -312,6 +374,7 @@ public class SCardView extends FrameLayout {
             parentTop = getPaddingTop();
             parentBottom = bottom - top - getPaddingBottom();
         }
+        int layoutDirection = getLayoutDirection(); //Please ignore this warning , this code work well under the Android 17
 
         for (int i = 0; i < count; i++) {
             View child = getChildAt(i);
@@ -324,7 +387,6 @@ public class SCardView extends FrameLayout {
                 if (gravity == -1) {
                     gravity = DEFAULT_CHILD_GRAVITY;
                 }
-                int layoutDirection = getLayoutDirection(); //Please ignore this warning , this code work well under the Android 17
                 int absoluteGravity = Gravity.getAbsoluteGravity(gravity, layoutDirection);
                 int horizontalGravity = absoluteGravity & Gravity.HORIZONTAL_GRAVITY_MASK;
                 int verticalGravity = gravity & Gravity.VERTICAL_GRAVITY_MASK;
@@ -377,16 +439,270 @@ public class SCardView extends FrameLayout {
         }
     }
 
+    /**
+     * Refreshes the offset of the content from the card shadow, only recomputing the corner inset
+     * when the shadow moved or the radius changed since the last layout.
+     *
+     * @return false when the card uses native shadows and the content only follows the padding
+     */
+    private boolean updateContentInsets() {
+        Drawable background = IMPL.getShadowBackground(mCardViewDelegate);
+        if (!(background instanceof SRoundRectDrawableWithShadow)) {
+            return false;
+        }
+        SRoundRectDrawableWithShadow bg = (SRoundRectDrawableWithShadow) background;
+        float moveX = bg.getMoveX();
+        float moveY = bg.getMoveY();
+        float cornerRadius = bg.getCornerRadius();
+        if (moveX != mLayoutMoveX || moveY != mLayoutMoveY || cornerRadius != mLayoutCornerRadius) {
+            mLayoutMoveX = moveX;
+            mLayoutMoveY = moveY;
+            mLayoutCornerRadius = cornerRadius;
+            mContentMoveX = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? moveX : 0f;
+            mContentMoveY = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ? moveY : 0f;
+            // distance from the card corner to the point of the arc at 45 degrees
+            mCornerInset = cornerRadius - (SQRT_2 * cornerRadius) / 2 + 0.5f;
+        }
+        return true;
+    }
+
+    /**
+     * Points the light at the card from {@link ShadowLight}, or back to the card's own light when
+     * there is no global light.
+     */
+    private void applyGlobalLight() {
+        getLocationInWindow(mWindowLocation);
+        mLightLocationX = mWindowLocation[0];
+        mLightLocationY = mWindowLocation[1];
+        float angle = ShadowLight.angleAt(mWindowLocation[0] + getWidth() / 2f,
+                mWindowLocation[1] + getHeight() / 2f);
+        if (!Float.isNaN(angle)) {
+            IMPL.setLightAngle(mCardViewDelegate, angle);
+        } else {
+            applyOwnLight();
+        }
+    }
+
+    private void applyOwnLight() {
+        if (Float.isNaN(mLightAngle)) {
+            IMPL.setLightDirection(mCardViewDelegate, mLightDirection);
+        } else {
+            IMPL.setLightAngle(mCardViewDelegate, mLightAngle);
+        }
+    }
+
+    /**
+     * Aims the global light again after the card or the light moved without a layout pass. The
+     * content follows the card in place, a layout per scrolled frame would relayout the list.
+     */
+    private void updateGlobalLight() {
+        if (!mUseGlobalLight) {
+            return;
+        }
+        applyGlobalLight();
+        Drawable background = IMPL.getShadowBackground(mCardViewDelegate);
+        if (background instanceof SRoundRectDrawableWithShadow && !isLayoutRequested()) {
+            SRoundRectDrawableWithShadow bg = (SRoundRectDrawableWithShadow) background;
+            if (bg.getMoveX() != mLayoutMoveX || bg.getMoveY() != mLayoutMoveY) {
+                layoutChildren(getLeft(), getTop(), getRight(), getBottom(), false);
+            }
+        }
+    }
+
+    /**
+     * Follows the global light while the card is attached and uses it.
+     */
+    private void registerGlobalLight(boolean register) {
+        if (mGlobalLightRegistered == register) {
+            return;
+        }
+        mGlobalLightRegistered = register;
+        if (register) {
+            getViewTreeObserver().addOnPreDrawListener(mGlobalLightPreDrawListener);
+            ShadowLight.addObserver(mGlobalLightObserver);
+        } else {
+            getViewTreeObserver().removeOnPreDrawListener(mGlobalLightPreDrawListener);
+            ShadowLight.removeObserver(mGlobalLightObserver);
+        }
+    }
+
+    /**
+     * Lays the content out again if the light moved the card.
+     */
+    private void onLightChanged() {
+        Drawable background = IMPL.getShadowBackground(mCardViewDelegate);
+        if (background instanceof SRoundRectDrawableWithShadow) {
+            SRoundRectDrawableWithShadow bg = (SRoundRectDrawableWithShadow) background;
+            if (bg.getMoveX() != mLayoutMoveX || bg.getMoveY() != mLayoutMoveY) {
+                requestLayout();
+            }
+        }
+    }
+
+    @Override
+    public void invalidateDrawable(@NonNull Drawable drawable) {
+        if (mBatchDepth > 0 && drawable == mCardViewDelegate.getCardBackground()) {
+            mPendingInvalidate = true;
+            return;
+        }
+        super.invalidateDrawable(drawable);
+    }
+
+    /**
+     * Starts a batch of changes. The setters of the returned {@link Editor} apply right away, but
+     * padding, minimum size and redraw are deferred until {@link Editor#apply()}, so restyling a
+     * card costs a single layout and a single shadow rebuild instead of one per property.
+     * Batches may be nested, only the outermost apply flushes.
+     */
+    public Editor edit() {
+        mBatchDepth++;
+        return new Editor();
+    }
+
+    private void endBatch() {
+        if (mBatchDepth == 0) {
+            throw new IllegalStateException("apply() called without a matching edit()");
+        }
+        if (--mBatchDepth > 0) {
+            return;
+        }
+        if (mPendingPaddingUpdate) {
+            mPendingPaddingUpdate = false;
+            IMPL.updatePadding(mCardViewDelegate);
+        }
+        if (mPendingInvalidate) {
+            mPendingInvalidate = false;
+            Drawable background = mCardViewDelegate.getCardBackground();
+            if (background != null) {
+                super.invalidateDrawable(background);
+            }
+        }
+    }
+
+    /**
+     * Collects card property changes started by {@link #edit()}.
+     */
+    public final class Editor {
+        private boolean mApplied = false;
+
+        private Editor() {
+        }
+
+        public Editor setRadius(float radius) {
+            SCardView.this.setRadius(radius);
+            return this;
+        }
+
+        public Editor setCornerRadii(float topLeft, float topRight, float bottomRight, float bottomLeft) {
+            SCardView.this.setCornerRadii(topLeft, topRight, bottomRight, bottomLeft);
+            return this;
+        }
+
+        public Editor setCornerMask(int cornerMask) {
+            SCardView.this.setCornerMask(cornerMask);
+            return this;
+        }
+
+        public Editor setLightAngle(float degrees) {
+            SCardView.this.setLightAngle(degrees);
+            return this;
+        }
+
+        public Editor setLightOffset(float offset) {
+            SCardView.this.setLightOffset(offset);
+            return this;
+        }
+
+        public Editor setCardElevation(float elevation) {
+            SCardView.this.setCardElevation(elevation);
+            return this;
+        }
+
+        public Editor setMaxCardElevation(float maxElevation) {
+            SCardView.this.setMaxCardElevation(maxElevation);
+            return this;
+        }
+
+        public Editor setCardBackgroundColor(@ColorInt int color) {
+            SCardView.this.setCardBackgroundColor(color);
+            return this;
+        }
+
+        public Editor setCardBackgroundColor(ColorStateList color) {
+            SCardView.this.setCardBackgroundColor(color);
+            return this;
+        }
+
+        public Editor setCardShadowColor(@ColorInt int startColor, @ColorInt int endColor) {
+            SCardView.this.setCardShadowColor(startColor, endColor);
+            return this;
+        }
+
+        public Editor setColors(@ColorInt int backgroundColor, @ColorInt int shadowStartColor,
+                                @ColorInt int shadowEndColor) {
+            SCardView.this.setColors(backgroundColor, shadowStartColor, shadowEndColor);
+            return this;
+        }
+
+        public Editor setContentPadding(int left, int top, int right, int bottom) {
+            SCardView.this.setContentPadding(left, top, right, bottom);
+            return this;
+        }
+
+        public Editor setUseCompatPadding(boolean useCompatPadding) {
+            SCardView.this.setUseCompatPadding(useCompatPadding);
+            return this;
+        }
+
+        public Editor setPreventCornerOverlap(boolean preventCornerOverlap) {
+            SCardView.this.setPreventCornerOverlap(preventCornerOverlap);
+            return this;
+        }
+
+        public Editor setShadowRenderMode(int renderMode) {
+            SCardView.this.setShadowRenderMode(renderMode);
+            return this;
+        }
+
+        /**
+         * Ends the batch, updating padding and minimum size and redrawing the card at most once.
+         * Calling it again is a no-op.
+         */
+        public void apply() {
+            if (mApplied) {
+                return;
+            }
+            mApplied = true;
+            endBatch();
+        }
+    }
+
     @Override
     public void setMinimumWidth(int minWidth) {
         mUserSetMinWidth = minWidth;
-        super.setMinimumWidth(minWidth);
+        updateMinimumSize();
     }
 
     @Override
     public void setMinimumHeight(int minHeight) {
         mUserSetMinHeight = minHeight;
-        super.setMinimumHeight(minHeight);
+        updateMinimumSize();
+    }
+
+    /**
+     * Sets the minimum size to the larger of the one given by the developer and the one the shadow
+     * needs, so it shrinks again when the shadow gets smaller.
+     */
+    private void updateMinimumSize() {
+        // bypass the overrides above, they record sizes given by the developer
+        int width = Math.max(mUserSetMinWidth, mShadowMinWidth);
+        if (width != getMinimumWidth()) {
+            super.setMinimumWidth(width);
+        }
+        int height = Math.max(mUserSetMinHeight, mShadowMinHeight);
+        if (height != getMinimumHeight()) {
+            super.setMinimumHeight(height);
+        }
     }
 
     /**
@@ -419,6 +735,232 @@ public class SCardView extends FrameLayout {
         IMPL.setShadowColor(mCardViewDelegate, startColor, endColor);
     }
 
+    /**
+     * Sets the light to one of the {@link ShadowDirection} constants, dropping any light angle.
+     * Ignored by native shadow cards, their light is always above.
+     *
+     * @attr ref R.styleable#SCardView_cardLightDirection
+     */
+    public void setLightDirection(int direction) {
+        mLightDirection = direction;
+        mLightAngle = Float.NaN;
+        if (!mUseGlobalLight || !ShadowLight.hasPosition()) {
+            IMPL.setLightDirection(mCardViewDelegate, direction);
+            onLightChanged();
+        }
+    }
+
+    /**
+     * Sets the light to come from the given angle, in degrees clockwise from the right, so 270 is
+     * a light above the card and 180 one on its left. The card moves towards the light, any angle
+     * in between the fixed directions works. Ignored by native shadow cards.
+     *
+     * @attr ref R.styleable#SCardView_cardLightAngle
+     */
+    public void setLightAngle(float degrees) {
+        mLightAngle = degrees;
+        if (!mUseGlobalLight || !ShadowLight.hasPosition()) {
+            IMPL.setLightAngle(mCardViewDelegate, degrees);
+            onLightChanged();
+        }
+    }
+
+    /**
+     * Sets how far the card moves towards the light, at most half the max elevation. Negative
+     * values restore the default, half the elevation.
+     *
+     * @attr ref R.styleable#SCardView_cardLightOffset
+     */
+    public void setLightOffset(float offset) {
+        IMPL.setLightOffset(mCardViewDelegate, offset);
+        onLightChanged();
+    }
+
+    /**
+     * Sets whether the light comes from the shared {@link ShadowLight} position instead of the
+     * card's own direction or angle. The card resolves the angle from its position on every
+     * layout, whenever it moves on screen, e.g. scrolled, and when the light moves.
+     *
+     * @attr ref R.styleable#SCardView_cardUseGlobalLight
+     */
+    public void setUseGlobalLight(boolean useGlobalLight) {
+        if (mUseGlobalLight == useGlobalLight) {
+            return;
+        }
+        mUseGlobalLight = useGlobalLight;
+        registerGlobalLight(useGlobalLight && isAttachedToWindow());
+        if (!useGlobalLight) {
+            applyOwnLight();
+            onLightChanged();
+        } else {
+            requestLayout();
+        }
+    }
+
+    public boolean getUseGlobalLight() {
+        return mUseGlobalLight;
+    }
+
+    /**
+     * Sets how the shadow is rendered.
+     *
+     * @param renderMode {@link SRoundRectDrawableWithShadow#RENDER_MODE_VECTOR} to draw the shadow
+     *                   with gradients on every frame, or
+     *                   {@link SRoundRectDrawableWithShadow#RENDER_MODE_BITMAP} to draw a shared
+     *                   pre-rasterized shadow bitmap as nine slices
+     * @attr ref R.styleable#SCardView_cardShadowRenderMode
+     */
+    public void setShadowRenderMode(int renderMode) {
+        IMPL.setShadowRenderMode(mCardViewDelegate, renderMode);
+    }
+
+    /**
+     * Returns how the shadow is rendered.
+     *
+     * @see .setShadowRenderMode
+     */
+    public int getShadowRenderMode() {
+        return IMPL.getShadowRenderMode(mCardViewDelegate);
+    }
+
+    /**
+     * Sets whether the card draws its own shadow. When it doesn't, only the card surface is drawn
+     * while the padding reserved for the shadow stays, e.g. when the parent draws shadows
+     * itself. {@link SCardShadowItemDecoration} doesn't need it and doesn't draw the shadow of
+     * cards turned off here. Cards using native shadows aren't affected.
+     *
+     * @param shadowEnabled `false` to only draw the card surface
+     */
+    public void setShadowEnabled(boolean shadowEnabled) {
+        Drawable background = IMPL.getShadowBackground(mCardViewDelegate);
+        if (background instanceof SRoundRectDrawableWithShadow) {
+            ((SRoundRectDrawableWithShadow) background).setDrawShadow(shadowEnabled);
+        }
+    }
+
+    /**
+     * Returns whether the card draws its own shadow.
+     *
+     * @see .setShadowEnabled
+     */
+    public boolean isShadowEnabled() {
+        Drawable background = IMPL.getShadowBackground(mCardViewDelegate);
+        return !(background instanceof SRoundRectDrawableWithShadow)
+                || ((SRoundRectDrawableWithShadow) background).getDrawShadow();
+    }
+
+    /**
+     * Sets whether the shadow skips the pixels covered by the card. When the card background is
+     * opaque those pixels would be painted twice, first by the shadow and then by the card,
+     * which costs fill rate on screens with many cards. Cards using native shadows aren't
+     * affected.
+     *
+     * @param reduceOverdraw `true` to clip the card surface out of the shadow pass
+     * @attr ref R.styleable#SCardView_cardReduceOverdraw
+     */
+    public void setReduceOverdraw(boolean reduceOverdraw) {
+        SRoundRectDrawableWithShadow background = getShadowDrawable();
+        if (background != null) {
+            background.setReduceOverdraw(reduceOverdraw);
+        }
+    }
+
+    /**
+     * Returns whether the shadow skips the pixels covered by an opaque card.
+     *
+     * @see .setReduceOverdraw
+     */
+    public boolean getReduceOverdraw() {
+        SRoundRectDrawableWithShadow background = getShadowDrawable();
+        return background != null && background.getReduceOverdraw();
+    }
+
+    /**
+     * Sets whether the shadow is recorded once into a RenderNode and replayed on the following
+     * draws, on API 29+ hardware accelerated windows. Pressed and checked colors then only redraw
+     * the card surface. On by default, cards using native shadows aren't affected.
+     *
+     * @param useRenderNode `false` to issue the shadow drawing on every draw
+     */
+    public void setUseShadowRenderNode(boolean useRenderNode) {
+        SRoundRectDrawableWithShadow background = getShadowDrawable();
+        if (background != null) {
+            background.setUseRenderNode(useRenderNode);
+        }
+    }
+
+    /**
+     * Returns whether the shadow is replayed from a RenderNode where the platform supports it.
+     *
+     * @see .setUseShadowRenderNode
+     */
+    public boolean getUseShadowRenderNode() {
+        SRoundRectDrawableWithShadow background = getShadowDrawable();
+        return background != null && background.getUseRenderNode();
+    }
+
+    /**
+     * Sets whether the shadow colors follow {@link ShadowPalette}. Cards without their own shadow
+     * colors do by default, setting colors turns it off. Cards using native shadows aren't
+     * affected.
+     */
+    public void setUseShadowPalette(boolean useShadowPalette) {
+        SRoundRectDrawableWithShadow background = getShadowDrawable();
+        if (background != null) {
+            background.setUseShadowPalette(useShadowPalette);
+        }
+    }
+
+    /**
+     * @see .setUseShadowPalette
+     */
+    public boolean getUseShadowPalette() {
+        SRoundRectDrawableWithShadow background = getShadowDrawable();
+        return background != null && background.getUseShadowPalette();
+    }
+
+    /**
+     * Sets how long the card color fades when the pressed, checked or other state picks another
+     * color of the background ColorStateList. Only the surface is redrawn during the fade, the
+     * shadow stays as it is. Cards using native shadows switch at once.
+     *
+     * @param durationMillis 0 to switch colors at once
+     * @attr ref R.styleable#SCardView_cardColorTransitionDuration
+     */
+    public void setColorTransitionDuration(long durationMillis) {
+        SRoundRectDrawableWithShadow background = getShadowDrawable();
+        if (background != null) {
+            background.setColorTransitionDuration(durationMillis);
+        }
+    }
+
+    /**
+     * @see .setColorTransitionDuration
+     */
+    public long getColorTransitionDuration() {
+        SRoundRectDrawableWithShadow background = getShadowDrawable();
+        return background != null ? background.getColorTransitionDuration() : 0L;
+    }
+
+    /**
+     * Returns the shadow counters of this card, null when it uses native shadows or when
+     * {@link ShadowMetrics} wasn't enabled while it was drawn.
+     */
+    @Nullable
+    public ShadowMetrics.CardMetrics getShadowMetrics() {
+        SRoundRectDrawableWithShadow background = getShadowDrawable();
+        return background != null ? background.getMetrics() : null;
+    }
+
+    /**
+     * Returns the drawable painting the shadow of this card, null when it uses native shadows.
+     */
+    SRoundRectDrawableWithShadow getShadowDrawable() {
+        Drawable background = IMPL.getShadowBackground(mCardViewDelegate);
+        return background instanceof SRoundRectDrawableWithShadow
+                ? (SRoundRectDrawableWithShadow) background : null;
+    }
+
     /**
      * update the both of background color and shadow color of the card view
      */
@@ -478,20 +1020,53 @@ public class SCardView extends FrameLayout {
      * @attr ref android.support.v7.cardview.R.styleable#CardView_cardCornerRadius
      * @see .setRadius
      */
-    public void setRadius(Float radius) {
+    public void setRadius(float radius) {
         IMPL.setRadius(mCardViewDelegate, radius);
     }
 
+    /**
+     * @deprecated use {@link #setRadius(float)}.
+     */
+    @Deprecated
+    public void setRadius(Float radius) {
+        setRadius(radius.floatValue());
+    }
+
     /**
      * Returns the corner radius of the CardView.
      *
      * @return Corner radius of the CardView
      * @see .getRadius
      */
-    public Float getRadius() {
+    public float getRadius() {
         return IMPL.getRadius(mCardViewDelegate);
     }
 
+    /**
+     * Updates the radius of each corner, {@link #getRadius()} then returns the largest of them.
+     * Native shadow cards only have one radius and use the largest.
+     *
+     * @attr ref com.xylitol.shadcardview.R.styleable#SCardView_cardTopLeftRadius
+     */
+    public void setCornerRadii(float topLeft, float topRight, float bottomRight, float bottomLeft) {
+        IMPL.setCornerRadii(mCardViewDelegate, topLeft, topRight, bottomRight, bottomLeft);
+    }
+
+    /**
+     * Updates which corners are rounded, a combination of the {@code CornerVisibility.CORNER_*}
+     * bits. The other corners are drawn square and cast no corner shadow. Ignored by native
+     * shadow cards.
+     *
+     * @attr ref com.xylitol.shadcardview.R.styleable#SCardView_cardCornerMask
+     */
+    public void setCornerMask(int cornerMask) {
+        IMPL.setCornerMask(mCardViewDelegate, cornerMask);
+    }
+
+    public int getCornerMask() {
+        return IMPL.getCornerMask(mCardViewDelegate);
+    }
+
     /**
      * Updates the backward compatible elevation of the CardView.
      *
@@ -500,10 +1075,105 @@ public class SCardView extends FrameLayout {
      * @see .getCardElevation
      * @see .setMaxCardElevation
      */
-    public void setCardElevation(Float elevation) {
+    public void setCardElevation(float elevation) {
+        cancelElevationAnimation();
         IMPL.setElevation(mCardViewDelegate, elevation);
     }
 
+    /**
+     * @deprecated use {@link #setCardElevation(float)}.
+     */
+    @Deprecated
+    public void setCardElevation(Float elevation) {
+        setCardElevation(elevation.floatValue());
+    }
+
+    /**
+     * Animates the backward compatible elevation of the CardView, for example to lift a card while
+     * it is pressed. Unlike calling {@link #setCardElevation(float)} on every frame, the shadow
+     * shaders are built once and only scaled while animating, and the padding never changes, so
+     * the animation doesn't trigger any layout. The elevation is capped by the max elevation.
+     * <p>
+     * Setting the elevation or max elevation cancels the animation, keeping the reached elevation.
+     *
+     * @param elevation the elevation to reach, in pixels
+     * @param duration  duration of the animation in milliseconds
+     * @see .setCardElevation
+     */
+    public void animateCardElevation(float elevation, long duration) {
+        cancelElevationAnimation();
+        float from = getCardElevation();
+        if (from == elevation) {
+            return;
+        }
+        ValueAnimator animator = ValueAnimator.ofFloat(from, elevation);
+        animator.setDuration(duration);
+        Drawable background = IMPL.getShadowBackground(mCardViewDelegate);
+        if (background instanceof SRoundRectDrawableWithShadow) {
+            final SRoundRectDrawableWithShadow bg = (SRoundRectDrawableWithShadow) background;
+            bg.beginShadowAnimation(from, elevation);
+            animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+                @Override
+                public void onAnimationUpdate(ValueAnimator animation) {
+                    bg.setAnimatedShadowSize((float) animation.getAnimatedValue());
+                }
+            });
+            animator.addListener(new AnimatorListenerAdapter() {
+                @Override
+                public void onAnimationEnd(Animator animation) {
+                    bg.endShadowAnimation();
+                }
+            });
+        } else {
+            // native shadows are drawn by the RenderThread, animating the view elevation is cheap
+            animator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+                @Override
+                public void onAnimationUpdate(ValueAnimator animation) {
+                    IMPL.setElevation(mCardViewDelegate, (float) animation.getAnimatedValue());
+                }
+            });
+        }
+        mElevationAnimator = animator;
+        animator.start();
+    }
+
+    private void cancelElevationAnimation() {
+        if (mElevationAnimator != null) {
+            ValueAnimator animator = mElevationAnimator;
+            mElevationAnimator = null;
+            animator.cancel();
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (mUseGlobalLight) {
+            registerGlobalLight(true);
+            // the light may have moved while the card was detached
+            mLightLocationX = Integer.MIN_VALUE;
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        cancelElevationAnimation();
+        registerGlobalLight(false);
+        // wherever the card goes next, it draws its own shadow until a decoration takes it again
+        setShadowDrawnByParent(false);
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * Lets {@link SCardShadowItemDecoration} draw the shadow of the card, or gives it back.
+     */
+    void setShadowDrawnByParent(boolean drawnByParent) {
+        SRoundRectDrawableWithShadow background = getShadowDrawable();
+        if (background != null) {
+            background.setShadowDrawnByParent(drawnByParent);
+        }
+    }
+
     /**
      * Returns the backward compatible elevation of the CardView.
      *
@@ -511,7 +1181,7 @@ public class SCardView extends FrameLayout {
      * @see .setCardElevation
      * @see .getMaxCardElevation
      */
-    public Float getCardElevation() {
+    public float getCardElevation() {
         return IMPL.getElevation(mCardViewDelegate);
     }
 
@@ -527,10 +1197,19 @@ public class SCardView extends FrameLayout {
      * @see .setCardElevation
      * @see .getMaxCardElevation
      */
-    public void setMaxCardElevation(Float maxElevation) {
+    public void setMaxCardElevation(float maxElevation) {
+        cancelElevationAnimation();
         IMPL.setMaxElevation(mCardViewDelegate, maxElevation);
     }
 
+    /**
+     * @deprecated use {@link #setMaxCardElevation(float)}.
+     */
+    @Deprecated
+    public void setMaxCardElevation(Float maxElevation) {
+        setMaxCardElevation(maxElevation.floatValue());
+    }
+
     /**
      * Returns the backward compatible maximum elevation of the CardView.
      *
@@ -538,7 +1217,7 @@ public class SCardView extends FrameLayout {
      * @see .setMaxCardElevation
      * @see .getCardElevation
      */
-    public Float getMaxCardElevation() {
+    public float getMaxCardElevation() {
         return IMPL.getMaxElevation(mCardViewDelegate);
     }
 
@@ -549,7 +1228,7 @@ public class SCardView extends FrameLayout {
      * @return True if CardView prevents overlaps with rounded corners on platforms before Lollipop.
      * Default value is `true`.
      */
-    public Boolean getPreventCornerOverlap() {
+    public boolean getPreventCornerOverlap() {
         return mPreventCornerOverlap;
     }
 
@@ -567,10 +1246,18 @@ public class SCardView extends FrameLayout {
      * @attr ref android.support.v7.cardview.R.styleable#CardView_cardPreventCornerOverlap
      * @see .setUseCompatPadding
      */
-    public void setPreventCornerOverlap(Boolean preventCornerOverlap) {
+    public void setPreventCornerOverlap(boolean preventCornerOverlap) {
         if (preventCornerOverlap != mPreventCornerOverlap) {
             mPreventCornerOverlap = preventCornerOverlap;
             IMPL.onPreventCornerOverlapChanged(mCardViewDelegate);
         }
     }
+
+    /**
+     * @deprecated use {@link #setPreventCornerOverlap(boolean)}.
+     */
+    @Deprecated
+    public void setPreventCornerOverlap(Boolean preventCornerOverlap) {
+        setPreventCornerOverlap(preventCornerOverlap.booleanValue());
+    }
 }
@@ -5,8 +5,10 @@ package com.xylitol.shadcardview;
  * time:
  */
 public class SCardViewApi17Impl extends SCardViewBaseImpl {
+
     @Override
-    public void initStatic() {
-        SRoundRectDrawableWithShadow.sRoundRectHelper = (canvas, bounds, cornerRadius, cornerVisibility, paint) -> canvas.drawRoundRect(bounds, cornerRadius, cornerRadius, paint);
+    SRoundRectDrawableWithShadow.RoundRectHelper.Factory getRoundRectHelperFactory() {
+        // a single drawRoundRect can only draw cards with four equal corners, the others are sliced
+        return SlicedRoundRectHelper.ROUND_RECT_FACTORY;
     }
 }
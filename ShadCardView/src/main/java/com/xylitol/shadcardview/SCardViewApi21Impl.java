@@ -0,0 +1,227 @@
+package com.xylitol.shadcardview;
+
+import static com.xylitol.shadcardview.CornerVisibility.CORNER_ALL;
+import static com.xylitol.shadcardview.ShadowDirection.DIRECTION_TOP;
+
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.os.Build;
+import android.support.annotation.RequiresApi;
+import android.view.View;
+
+/**
+ * declaration: draws the shadow natively from the view elevation and outline, so the RenderThread
+ * renders it instead of the UI thread. Only used when the card asks for it with
+ * cardUseNativeShadow and its shadow can be expressed that way, see {@link #canUseNativeShadow}.
+ * time:
+ */
+@RequiresApi(21)
+public class SCardViewApi21Impl implements SCardViewImpl {
+
+    private int mShadowRenderMode = SRoundRectDrawableWithShadow.RENDER_MODE_VECTOR;
+
+    /**
+     * The platform light sits above the screen, so native shadows always fall below the card like
+     * {@link ShadowDirection#DIRECTION_TOP}, a light at an angle or the global light can't be
+     * native. Square or unequal corners can't be expressed by a round rect outline and custom
+     * shadow colors need API 28.
+     *
+     * @param lightAngle the cardLightAngle, NaN when not set
+     */
+    static boolean canUseNativeShadow(int direction, float lightAngle, boolean useGlobalLight,
+                                      int cornerMask, boolean uniformRadii, int startColor,
+                                      int endColor) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return false;
+        }
+        if (!Float.isNaN(lightAngle) || useGlobalLight) {
+            return false;
+        }
+        if (direction != DIRECTION_TOP || cornerMask != CORNER_ALL || !uniformRadii) {
+            return false;
+        }
+        boolean defaultColors = startColor == -1 && endColor == -1;
+        return defaultColors || Build.VERSION.SDK_INT >= Build.VERSION_CODES.P;
+    }
+
+    @Override
+    public void initialize(SCardViewDelegate cardView, Context context, ColorStateList backgroundColor,
+                           float radius, float elevation, float maxElevation, int direction,
+                           int cornerVisibility, int startColor, int endColor) {
+        SRoundRectDrawable background = new SRoundRectDrawable(backgroundColor, radius);
+        cardView.setCardBackground(background);
+
+        View view = cardView.getCardView();
+        view.setClipToOutline(true);
+        view.setElevation(elevation);
+        if (startColor != -1 || endColor != -1) {
+            // -1 leaves a color unset, which the platform would take for opaque white
+            Resources resources = context.getResources();
+            setShadowColor(cardView,
+                    startColor == -1 ? resources.getColor(R.color.sl_cardview_shadow_start_color) : startColor,
+                    endColor == -1 ? resources.getColor(R.color.sl_cardview_shadow_end_color) : endColor);
+        }
+        setMaxElevation(cardView, maxElevation);
+    }
+
+    @Override
+    public void setRadius(SCardViewDelegate cardView, float radius) {
+        SRoundRectDrawable background = getShadowBackground(cardView);
+        if (background.getRadius() == radius) {
+            return;
+        }
+        background.setRadius(radius);
+        updatePadding(cardView);
+    }
+
+    @Override
+    public float getRadius(SCardViewDelegate cardView) {
+        return getShadowBackground(cardView).getRadius();
+    }
+
+    /**
+     * The outline can only be a round rect, only the largest radius is used.
+     */
+    @Override
+    public void setCornerRadii(SCardViewDelegate cardView, float topLeft, float topRight,
+                               float bottomRight, float bottomLeft) {
+        setRadius(cardView, Math.max(Math.max(topLeft, topRight), Math.max(bottomRight, bottomLeft)));
+    }
+
+    /**
+     * Ignored, every corner of a native card is rounded.
+     */
+    @Override
+    public void setCornerMask(SCardViewDelegate cardView, int cornerMask) {
+    }
+
+    @Override
+    public int getCornerMask(SCardViewDelegate cardView) {
+        return CORNER_ALL;
+    }
+
+    /**
+     * Ignored, the platform light is fixed above the screen.
+     */
+    @Override
+    public void setLightDirection(SCardViewDelegate cardView, int direction) {
+    }
+
+    /**
+     * Ignored, the platform light is fixed above the screen.
+     */
+    @Override
+    public void setLightAngle(SCardViewDelegate cardView, float degrees) {
+    }
+
+    /**
+     * Ignored, the platform light is fixed above the screen.
+     */
+    @Override
+    public void setLightOffset(SCardViewDelegate cardView, float offset) {
+    }
+
+    @Override
+    public void setElevation(SCardViewDelegate cardView, float elevation) {
+        cardView.getCardView().setElevation(elevation);
+    }
+
+    @Override
+    public float getElevation(SCardViewDelegate cardView) {
+        return cardView.getCardView().getElevation();
+    }
+
+    @Override
+    public void setMaxElevation(SCardViewDelegate cardView, float maxElevation) {
+        getShadowBackground(cardView).setPadding(maxElevation,
+                cardView.getUseCompatPadding(), cardView.getPreventCornerOverlap());
+        updatePadding(cardView);
+    }
+
+    @Override
+    public float getMaxElevation(SCardViewDelegate cardView) {
+        return getShadowBackground(cardView).getPadding();
+    }
+
+    @Override
+    public float getMinWidth(SCardViewDelegate cardView) {
+        return getRadius(cardView) * 2;
+    }
+
+    @Override
+    public float getMinHeight(SCardViewDelegate cardView) {
+        return getRadius(cardView) * 2;
+    }
+
+    @Override
+    public void updatePadding(SCardViewDelegate cardView) {
+        if (!cardView.getUseCompatPadding()) {
+            cardView.setShadowPadding(0, 0, 0, 0);
+            return;
+        }
+        float elevation = getMaxElevation(cardView);
+        float radius = getRadius(cardView);
+        int hPadding = (int) Math.ceil(ShadowGeometry.calculateHorizontalPadding(elevation,
+                radius, cardView.getPreventCornerOverlap()));
+        int vPadding = (int) Math.ceil(ShadowGeometry.calculateVerticalPadding(elevation,
+                radius, cardView.getPreventCornerOverlap()));
+        cardView.setShadowPadding(hPadding, vPadding, hPadding, vPadding);
+    }
+
+    @Override
+    public void onCompatPaddingChanged(SCardViewDelegate cardView) {
+        setMaxElevation(cardView, getMaxElevation(cardView));
+    }
+
+    @Override
+    public void onPreventCornerOverlapChanged(SCardViewDelegate cardView) {
+        setMaxElevation(cardView, getMaxElevation(cardView));
+    }
+
+    @Override
+    public void setBackgroundColor(SCardViewDelegate cardView, ColorStateList color) {
+        getShadowBackground(cardView).setColor(color);
+    }
+
+    /**
+     * Native shadows only have one color, the start color is used. Ignored before API 28.
+     */
+    @Override
+    public void setShadowColor(SCardViewDelegate cardView, int startColor, int endColor) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            View view = cardView.getCardView();
+            view.setOutlineAmbientShadowColor(startColor);
+            view.setOutlineSpotShadowColor(startColor);
+        }
+    }
+
+    @Override
+    public ColorStateList getBackgroundColor(SCardViewDelegate cardView) {
+        return getShadowBackground(cardView).getColor();
+    }
+
+    @Override
+    public SRoundRectDrawable getShadowBackground(SCardViewDelegate cardView) {
+        return (SRoundRectDrawable) cardView.getCardBackground();
+    }
+
+    @Override
+    public void setColors(SCardViewDelegate cardView, int backgroundColor, int shadowStartColor, int shadowEndColor) {
+        setBackgroundColor(cardView, ColorStateList.valueOf(backgroundColor));
+        setShadowColor(cardView, shadowStartColor, shadowEndColor);
+    }
+
+    /**
+     * The RenderThread draws the shadow, the render mode is only kept to be reported back.
+     */
+    @Override
+    public void setShadowRenderMode(SCardViewDelegate cardView, int renderMode) {
+        mShadowRenderMode = renderMode;
+    }
+
+    @Override
+    public int getShadowRenderMode(SCardViewDelegate cardView) {
+        return mShadowRenderMode;
+    }
+}
@@ -1,16 +1,10 @@
 package com.xylitol.shadcardview;
 
-import static com.xylitol.shadcardview.CornerVisibility.NOBOTTOMCORNER;
-import static com.xylitol.shadcardview.CornerVisibility.NOLEFTCORNER;
-import static com.xylitol.shadcardview.CornerVisibility.NOLT_RBCORNER;
-import static com.xylitol.shadcardview.CornerVisibility.NORIGHTCORNER;
-import static com.xylitol.shadcardview.CornerVisibility.NORT_LBCORNER;
-import static com.xylitol.shadcardview.CornerVisibility.NOTOPCORNER;
-
 import android.content.Context;
 import android.content.res.ColorStateList;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.graphics.Path;
 import android.graphics.Rect;
 import android.graphics.RectF;
 
@@ -20,77 +14,29 @@ import android.graphics.RectF;
  */
 public class SCardViewBaseImpl implements SCardViewImpl {
 
-    private static RectF mCornerRect = new RectF();
-
-    @Override
-    public void initStatic() {
-        // Draws a round rect using 7 draw operations. This is faster than using
-        // canvas.drawRoundRect before JBMR1 because API 11-16 used alpha mask textures to draw
-        // shapes.
-        SRoundRectDrawableWithShadow.sRoundRectHelper = new SRoundRectDrawableWithShadow.RoundRectHelper() {
-            @Override
-            public void drawRoundRect(Canvas canvas, RectF bounds, Float cornerRadius, int cornerVisibility, Paint paint) {
-                float twoRadius = cornerRadius * 2;
-                float innerWidth = bounds.width() - twoRadius - 1f;
-                float innerHeight = bounds.height() - twoRadius - 1f;
-                if (cornerRadius >= 1f) {
-                    // increment corner radius to account for half pixels.
-                    float roundedCornerRadius = cornerRadius + .5f;
-                    mCornerRect.set(-roundedCornerRadius, -roundedCornerRadius, roundedCornerRadius, roundedCornerRadius);
-                    int saved = canvas.save();
-                    canvas.translate(bounds.left + roundedCornerRadius, bounds.top + roundedCornerRadius);
-                    if (cornerVisibility == NOLEFTCORNER || cornerVisibility == NOTOPCORNER || cornerVisibility == NOLT_RBCORNER)
-                        canvas.drawRect(-roundedCornerRadius, -roundedCornerRadius, 0f, 0f, paint);
-                    else
-                        canvas.drawArc(mCornerRect, 180f, 90f, true, paint);
-                    canvas.translate(innerWidth, 0f);
-                    canvas.rotate(90f);
-                    if (cornerVisibility == NORIGHTCORNER || cornerVisibility == NOTOPCORNER || cornerVisibility == NORT_LBCORNER)
-                        canvas.drawRect(-roundedCornerRadius, -roundedCornerRadius, 0f, 0f, paint);
-                    else
-                        canvas.drawArc(mCornerRect, 180f, 90f, true, paint);
-                    canvas.translate(innerHeight, 0f);
-                    canvas.rotate(90f);
-                    if (cornerVisibility == NORIGHTCORNER || cornerVisibility == NOBOTTOMCORNER || cornerVisibility == NOLT_RBCORNER)
-                        canvas.drawRect(-roundedCornerRadius, -roundedCornerRadius, 0f, 0f, paint);
-                    else
-                        canvas.drawArc(mCornerRect, 180f, 90f, true, paint);
-                    canvas.translate(innerWidth, 0f);
-                    canvas.rotate(90f);
-                    if (cornerVisibility == NOLEFTCORNER || cornerVisibility == NOBOTTOMCORNER || cornerVisibility == NORT_LBCORNER)
-                        canvas.drawRect(-roundedCornerRadius, -roundedCornerRadius, 0f, 0f, paint);
-                    else
-                        canvas.drawArc(mCornerRect, 180f, 90f, true, paint);
-                    canvas.restoreToCount(saved);
-
-                    //draw top and bottom pieces
-                    canvas.drawRect(bounds.left + roundedCornerRadius - 1f, bounds.top,
-                            bounds.right - roundedCornerRadius + 1f,
-                            bounds.top + roundedCornerRadius, paint);
-
-                    canvas.drawRect(bounds.left + roundedCornerRadius - 1f,
-                            bounds.bottom - roundedCornerRadius,
-                            bounds.right - roundedCornerRadius + 1f, bounds.bottom, paint);
-                }
-                // center
-                canvas.drawRect(bounds.left, bounds.top + cornerRadius,
-                        bounds.right, bounds.bottom - cornerRadius, paint);
-            }
-        };
+    // every card has its own impl, so the padding rect is reused across updates
+    private final Rect mShadowPadding = new Rect();
+
+    /**
+     * Returns the factory of the helpers drawing the card surface, one helper per drawable.
+     */
+    SRoundRectDrawableWithShadow.RoundRectHelper.Factory getRoundRectHelperFactory() {
+        return SlicedRoundRectHelper.SLICED_FACTORY;
     }
 
     @Override
-    public void initialize(SCardViewDelegate cardView, Context context, ColorStateList backgroundColor, Float radius, Float elevation, Float maxElevation, Integer direction, Integer cornerVisibility, Integer startColor, Integer endColor) {
+    public void initialize(SCardViewDelegate cardView, Context context, ColorStateList backgroundColor, float radius, float elevation, float maxElevation, int direction, int cornerVisibility, int startColor, int endColor) {
         SRoundRectDrawableWithShadow background = createBackground(cardView, context, backgroundColor, radius,
                 elevation, maxElevation, direction, cornerVisibility, startColor, endColor);
         background.setAddPaddingForCorners(cardView.getPreventCornerOverlap());
+        background.setRoundRectHelperFactory(getRoundRectHelperFactory());
         cardView.setCardBackground(background);
         updatePadding(cardView);
     }
 
     private SRoundRectDrawableWithShadow createBackground(SCardViewDelegate cardViewDelegate, Context context,
-                                                          ColorStateList backgroundColor, Float radius, Float elevation,
-                                                          Float maxElevation, int direction, int cornerVisibility, int startColor,
+                                                          ColorStateList backgroundColor, float radius, float elevation,
+                                                          float maxElevation, int direction, int cornerVisibility, int startColor,
                                                           int endColor) {
         return new SRoundRectDrawableWithShadow(cardViewDelegate, context.getResources(), backgroundColor, radius,
                 elevation, maxElevation, direction, cornerVisibility, startColor, endColor);
@@ -98,8 +44,7 @@ public class SCardViewBaseImpl implements SCardViewImpl {
 
     @Override
     public void updatePadding(SCardViewDelegate cardView) {
-        Rect shadowPadding = new Rect();
-
+        Rect shadowPadding = mShadowPadding;
         getShadowBackground(cardView).getMaxShadowAndCornerPadding(shadowPadding);
         cardView.setMinWidthHeightInternal((int) Math.ceil(getMinWidth(cardView)),
                 (int) Math.ceil(getMinHeight(cardView)));
@@ -130,58 +75,110 @@ public class SCardViewBaseImpl implements SCardViewImpl {
     }
 
     @Override
-    public void setColors(SCardViewDelegate cardView, Integer backgroundColor, Integer shadowStartColor, Integer shadowEndColor) {
+    public void setColors(SCardViewDelegate cardView, int backgroundColor, int shadowStartColor, int shadowEndColor) {
 
         getShadowBackground(cardView).setColors(backgroundColor, shadowStartColor, shadowEndColor);
     }
 
+    @Override
+    public void setShadowRenderMode(SCardViewDelegate cardView, int renderMode) {
+        getShadowBackground(cardView).setShadowRenderMode(renderMode);
+    }
+
+    @Override
+    public int getShadowRenderMode(SCardViewDelegate cardView) {
+        return getShadowBackground(cardView).getShadowRenderMode();
+    }
+
     @Override
     public ColorStateList getBackgroundColor(SCardViewDelegate cardView) {
         return getShadowBackground(cardView).getColor();
     }
 
     @Override
-    public void setRadius(SCardViewDelegate cardView, Float radius) {
-
-        getShadowBackground(cardView).setCornerRadius(radius);
-        updatePadding(cardView);
+    public void setRadius(SCardViewDelegate cardView, float radius) {
+        SRoundRectDrawableWithShadow background = getShadowBackground(cardView);
+        float oldRadius = background.getCornerRadius();
+        background.setCornerRadius(radius);
+        if (background.getCornerRadius() != oldRadius) {
+            updatePadding(cardView);
+        }
     }
 
     @Override
-    public Float getRadius(SCardViewDelegate cardView) {
+    public float getRadius(SCardViewDelegate cardView) {
         return getShadowBackground(cardView).getCornerRadius();
     }
 
     @Override
-    public void setElevation(SCardViewDelegate cardView, Float elevation) {
+    public void setCornerRadii(SCardViewDelegate cardView, float topLeft, float topRight,
+                               float bottomRight, float bottomLeft) {
+        SRoundRectDrawableWithShadow background = getShadowBackground(cardView);
+        float oldRadius = background.getCornerRadius();
+        background.setCornerRadii(topLeft, topRight, bottomRight, bottomLeft);
+        // padding and minimum size only depend on the largest radius
+        if (background.getCornerRadius() != oldRadius) {
+            updatePadding(cardView);
+        }
+    }
+
+    @Override
+    public void setCornerMask(SCardViewDelegate cardView, int cornerMask) {
+        getShadowBackground(cardView).setCornerMask(cornerMask);
+    }
 
+    @Override
+    public int getCornerMask(SCardViewDelegate cardView) {
+        return getShadowBackground(cardView).getCornerMask();
+    }
+
+    @Override
+    public void setLightDirection(SCardViewDelegate cardView, int direction) {
+        getShadowBackground(cardView).setLightDirection(direction);
+    }
+
+    @Override
+    public void setLightAngle(SCardViewDelegate cardView, float degrees) {
+        getShadowBackground(cardView).setLightAngle(degrees);
+    }
+
+    @Override
+    public void setLightOffset(SCardViewDelegate cardView, float offset) {
+        getShadowBackground(cardView).setLightOffset(offset);
+    }
+
+    @Override
+    public void setElevation(SCardViewDelegate cardView, float elevation) {
         getShadowBackground(cardView).setShadowSize(elevation);
     }
 
     @Override
-    public Float getElevation(SCardViewDelegate cardView) {
+    public float getElevation(SCardViewDelegate cardView) {
         return getShadowBackground(cardView).getShadowSize();
     }
 
     @Override
-    public void setMaxElevation(SCardViewDelegate cardView, Float maxFloat) {
-
-        getShadowBackground(cardView).setMaxShadowSize(maxFloat);
-        updatePadding(cardView);
+    public void setMaxElevation(SCardViewDelegate cardView, float maxElevation) {
+        SRoundRectDrawableWithShadow background = getShadowBackground(cardView);
+        float oldMaxElevation = background.getMaxShadowSize();
+        background.setMaxShadowSize(maxElevation);
+        if (background.getMaxShadowSize() != oldMaxElevation) {
+            updatePadding(cardView);
+        }
     }
 
     @Override
-    public Float getMaxElevation(SCardViewDelegate cardView) {
+    public float getMaxElevation(SCardViewDelegate cardView) {
         return getShadowBackground(cardView).getMaxShadowSize();
     }
 
     @Override
-    public Float getMinWidth(SCardViewDelegate cardView) {
+    public float getMinWidth(SCardViewDelegate cardView) {
         return getShadowBackground(cardView).getMinWidth();
     }
 
     @Override
-    public Float getMinHeight(SCardViewDelegate cardView) {
+    public float getMinHeight(SCardViewDelegate cardView) {
         return getShadowBackground(cardView).getMinHeight();
     }
 
@@ -189,4 +186,135 @@ public class SCardViewBaseImpl implements SCardViewImpl {
     public SRoundRectDrawableWithShadow getShadowBackground(SCardViewDelegate cardView) {
         return (SRoundRectDrawableWithShadow) cardView.getCardBackground();
     }
+
+    /**
+     * Tiles the card surface with four corner wedges and the rects between them, so each pixel of
+     * the card is filled once. The corner centers are snapped to whole pixels, the tiles then meet
+     * on pixel boundaries and anti-aliasing can't leave seams between them. Each corner has its
+     * own radius, square corners simply have no wedge. Drawing a round rect this way was faster
+     * than canvas.drawRoundRect before JBMR1, where shapes used alpha mask textures.
+     */
+    static class SlicedRoundRectHelper implements SRoundRectDrawableWithShadow.RoundRectHelper {
+
+        static final SRoundRectDrawableWithShadow.RoundRectHelper.Factory SLICED_FACTORY =
+                new SRoundRectDrawableWithShadow.RoundRectHelper.Factory() {
+                    @Override
+                    public SRoundRectDrawableWithShadow.RoundRectHelper create() {
+                        return new SlicedRoundRectHelper(false);
+                    }
+                };
+        static final SRoundRectDrawableWithShadow.RoundRectHelper.Factory ROUND_RECT_FACTORY =
+                new SRoundRectDrawableWithShadow.RoundRectHelper.Factory() {
+                    @Override
+                    public SRoundRectDrawableWithShadow.RoundRectHelper create() {
+                        return new SlicedRoundRectHelper(true);
+                    }
+                };
+
+        // draw cards with four equal corners with a single drawRoundRect
+        private final boolean mUseDrawRoundRect;
+        private final RectF mCornerRect = new RectF();
+        // only used by cards whose corners are too large for their size
+        private Path mFallbackPath;
+        private float[] mFallbackRadii;
+
+        SlicedRoundRectHelper(boolean useDrawRoundRect) {
+            mUseDrawRoundRect = useDrawRoundRect;
+        }
+
+        @Override
+        public void drawRoundRect(Canvas canvas, RectF bounds, float[] cornerRadii, Paint paint) {
+            float lt = cornerRadii[0];
+            float rt = cornerRadii[1];
+            float rb = cornerRadii[2];
+            float lb = cornerRadii[3];
+            boolean uniform = lt == rt && rt == rb && rb == lb;
+            if (uniform && mUseDrawRoundRect) {
+                canvas.drawRoundRect(bounds, lt, lt, paint);
+                return;
+            }
+            if (lt < 1f && rt < 1f && rb < 1f && lb < 1f) {
+                canvas.drawRect(bounds, paint);
+                return;
+            }
+            // increment corner radii to account for half pixels, square corners stay on the card corner
+            lt = lt < 1f ? 0f : lt + .5f;
+            rt = rt < 1f ? 0f : rt + .5f;
+            rb = rb < 1f ? 0f : rb + .5f;
+            lb = lb < 1f ? 0f : lb + .5f;
+            float ltX = snap(bounds.left, lt);
+            float ltY = snap(bounds.top, lt);
+            float rtX = snap(bounds.right, -rt);
+            float rtY = snap(bounds.top, rt);
+            float rbX = snap(bounds.right, -rb);
+            float rbY = snap(bounds.bottom, -rb);
+            float lbX = snap(bounds.left, lb);
+            float lbY = snap(bounds.bottom, -lb);
+            // the columns between the corners
+            float innerLeft = Math.max(ltX, lbX);
+            float innerRight = Math.min(rtX, rbX);
+            if (innerLeft > innerRight || ltY > lbY || rtY > rbY) {
+                // too small for the corners, a plain round rect has no overlap to avoid
+                drawFallback(canvas, bounds, cornerRadii, uniform, paint);
+                return;
+            }
+
+            drawCorner(canvas, ltX, ltY, lt, 180f, paint);
+            drawCorner(canvas, rtX, rtY, rt, 270f, paint);
+            drawCorner(canvas, rbX, rbY, rb, 0f, paint);
+            drawCorner(canvas, lbX, lbY, lb, 90f, paint);
+
+            drawRect(canvas, innerLeft, bounds.top, innerRight, bounds.bottom, paint);
+            // between the left corners, then next to the smaller one of them
+            drawRect(canvas, bounds.left, ltY, innerLeft, lbY, paint);
+            drawRect(canvas, ltX, bounds.top, innerLeft, ltY, paint);
+            drawRect(canvas, lbX, lbY, innerLeft, bounds.bottom, paint);
+            // same on the right
+            drawRect(canvas, innerRight, rtY, bounds.right, rbY, paint);
+            drawRect(canvas, innerRight, bounds.top, rtX, rtY, paint);
+            drawRect(canvas, innerRight, rbY, rbX, bounds.bottom, paint);
+        }
+
+        private static float snap(float edge, float offset) {
+            return offset == 0f ? edge : Math.round(edge + offset);
+        }
+
+        private static void drawRect(Canvas canvas, float left, float top, float right, float bottom,
+                                     Paint paint) {
+            if (right > left && bottom > top) {
+                canvas.drawRect(left, top, right, bottom, paint);
+            }
+        }
+
+        /**
+         * Draws the quarter of the corner circle facing startAngle, nothing for square corners.
+         */
+        private void drawCorner(Canvas canvas, float centerX, float centerY, float r, float startAngle,
+                                Paint paint) {
+            if (r == 0f) {
+                return;
+            }
+            mCornerRect.set(centerX - r, centerY - r, centerX + r, centerY + r);
+            canvas.drawArc(mCornerRect, startAngle, 90f, true, paint);
+        }
+
+        private void drawFallback(Canvas canvas, RectF bounds, float[] cornerRadii, boolean uniform,
+                                  Paint paint) {
+            if (uniform) {
+                canvas.drawRoundRect(bounds, cornerRadii[0], cornerRadii[0], paint);
+                return;
+            }
+            if (mFallbackPath == null) {
+                mFallbackPath = new Path();
+                mFallbackRadii = new float[8];
+            }
+            for (int i = 0; i < 4; i++) {
+                mFallbackRadii[2 * i] = cornerRadii[i];
+                mFallbackRadii[2 * i + 1] = cornerRadii[i];
+            }
+            mFallbackPath.rewind();
+            mFallbackPath.addRoundRect(bounds, mFallbackRadii, Path.Direction.CW);
+            canvas.drawPath(mFallbackPath, paint);
+        }
+    }
 }
@@ -12,25 +12,36 @@ import android.support.annotation.ColorInt;
 public interface SCardViewImpl {
 
     void initialize(SCardViewDelegate cardView, Context context, ColorStateList backgroundColor,
-                    Float radius, Float elevation, Float maxElevation, Integer direction, Integer cornerVisibility, Integer startColor, Integer endColor);
+                    float radius, float elevation, float maxElevation, int direction, int cornerVisibility, int startColor, int endColor);
 
-    void setRadius(SCardViewDelegate cardView, Float radius);
+    void setRadius(SCardViewDelegate cardView, float radius);
 
-    Float getRadius(SCardViewDelegate cardView);
+    float getRadius(SCardViewDelegate cardView);
 
-    void setElevation(SCardViewDelegate cardView, Float elevation);
+    void setCornerRadii(SCardViewDelegate cardView, float topLeft, float topRight, float bottomRight,
+                        float bottomLeft);
 
-    Float getElevation(SCardViewDelegate cardView);
+    void setCornerMask(SCardViewDelegate cardView, int cornerMask);
 
-    void initStatic();
+    int getCornerMask(SCardViewDelegate cardView);
 
-    void setMaxElevation(SCardViewDelegate cardView, Float maxFloat);
+    void setLightDirection(SCardViewDelegate cardView, int direction);
 
-    Float getMaxElevation(SCardViewDelegate cardView);
+    void setLightAngle(SCardViewDelegate cardView, float degrees);
 
-    Float getMinWidth(SCardViewDelegate cardView);
+    void setLightOffset(SCardViewDelegate cardView, float offset);
 
-    Float getMinHeight(SCardViewDelegate cardView);
+    void setElevation(SCardViewDelegate cardView, float elevation);
+
+    float getElevation(SCardViewDelegate cardView);
+
+    void setMaxElevation(SCardViewDelegate cardView, float maxElevation);
+
+    float getMaxElevation(SCardViewDelegate cardView);
+
+    float getMinWidth(SCardViewDelegate cardView);
+
+    float getMinHeight(SCardViewDelegate cardView);
 
     void updatePadding(SCardViewDelegate cardView);
 
@@ -46,6 +57,10 @@ public interface SCardViewImpl {
 
     Drawable getShadowBackground(SCardViewDelegate cardView);
 
-    void setColors(SCardViewDelegate cardView, Integer backgroundColor, Integer shadowStartColor, Integer shadowEndColor);
+    void setColors(SCardViewDelegate cardView, @ColorInt int backgroundColor, @ColorInt int shadowStartColor, @ColorInt int shadowEndColor);
+
+    void setShadowRenderMode(SCardViewDelegate cardView, int renderMode);
+
+    int getShadowRenderMode(SCardViewDelegate cardView);
 
 }
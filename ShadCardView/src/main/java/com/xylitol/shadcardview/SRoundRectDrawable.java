@@ -0,0 +1,146 @@
+package com.xylitol.shadcardview;
+
+import android.content.res.ColorStateList;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Outline;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.RequiresApi;
+
+/**
+ * declaration: card surface used by {@link SCardViewApi21Impl}. It only draws the rounded card and
+ * provides the outline, the shadow itself is drawn by the RenderThread from the view elevation.
+ * time:
+ */
+@RequiresApi(21)
+class SRoundRectDrawable extends Drawable {
+    private float mRadius;
+    private final Paint mPaint;
+    private final RectF mBoundsF;
+    private final Rect mBoundsI;
+    // padding kept inside the bounds when compat padding is used, the card is inset by it
+    private float mPadding;
+    private boolean mInsetForPadding = false;
+    private boolean mInsetForRadius = true;
+
+    private ColorStateList mBackground;
+
+    SRoundRectDrawable(ColorStateList backgroundColor, float radius) {
+        mRadius = radius;
+        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+        setBackground(backgroundColor);
+        mBoundsF = new RectF();
+        mBoundsI = new Rect();
+    }
+
+    private void setBackground(ColorStateList color) {
+        mBackground = (color == null ? ColorStateList.valueOf(Color.TRANSPARENT) : color);
+        mPaint.setColor(mBackground.getColorForState(getState(), mBackground.getDefaultColor()));
+    }
+
+    void setPadding(float padding, boolean insetForPadding, boolean insetForRadius) {
+        if (padding == mPadding && mInsetForPadding == insetForPadding
+                && mInsetForRadius == insetForRadius) {
+            return;
+        }
+        mPadding = padding;
+        mInsetForPadding = insetForPadding;
+        mInsetForRadius = insetForRadius;
+        updateBounds(null);
+        invalidateSelf();
+    }
+
+    float getPadding() {
+        return mPadding;
+    }
+
+    @Override
+    public void draw(@NonNull Canvas canvas) {
+        canvas.drawRoundRect(mBoundsF, mRadius, mRadius, mPaint);
+    }
+
+    private void updateBounds(Rect bounds) {
+        if (bounds == null) {
+            bounds = getBounds();
+        }
+        mBoundsF.set(bounds.left, bounds.top, bounds.right, bounds.bottom);
+        mBoundsI.set(bounds);
+        if (mInsetForPadding) {
+            float vInset = (float) ShadowGeometry.calculateVerticalPadding(mPadding, mRadius, mInsetForRadius);
+            float hInset = (float) ShadowGeometry.calculateHorizontalPadding(mPadding, mRadius, mInsetForRadius);
+            mBoundsI.inset((int) Math.ceil(hInset), (int) Math.ceil(vInset));
+            // to make sure they have same bounds.
+            mBoundsF.set(mBoundsI);
+        }
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        updateBounds(bounds);
+    }
+
+    @Override
+    public void getOutline(@NonNull Outline outline) {
+        outline.setRoundRect(mBoundsI, mRadius);
+    }
+
+    void setRadius(float radius) {
+        if (radius == mRadius) {
+            return;
+        }
+        mRadius = radius;
+        updateBounds(null);
+        invalidateSelf();
+    }
+
+    float getRadius() {
+        return mRadius;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        mPaint.setAlpha(alpha);
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        mPaint.setColorFilter(colorFilter);
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+
+    void setColor(@Nullable ColorStateList color) {
+        setBackground(color);
+        invalidateSelf();
+    }
+
+    ColorStateList getColor() {
+        return mBackground;
+    }
+
+    @Override
+    protected boolean onStateChange(int[] state) {
+        int newColor = mBackground.getColorForState(state, mBackground.getDefaultColor());
+        if (mPaint.getColor() == newColor) {
+            return false;
+        }
+        mPaint.setColor(newColor);
+        return true;
+    }
+
+    @Override
+    public boolean isStateful() {
+        return mBackground != null && mBackground.isStateful() || super.isStateful();
+    }
+}
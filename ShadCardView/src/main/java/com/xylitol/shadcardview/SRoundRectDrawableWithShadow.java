@@ -1,25 +1,45 @@
 package com.xylitol.shadcardview;
 
-import static com.xylitol.shadcardview.CornerVisibility.*;
-import static com.xylitol.shadcardview.ShadowDirection.*;
+import static com.xylitol.shadcardview.CornerVisibility.toMask;
+import static com.xylitol.shadcardview.ShadowDirection.DIRECTION_TOP;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_COUNT;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_EDGE_BOTTOM;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_EDGE_RIGHT;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_EDGE_TOP;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_HAS_EDGE;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_RADIUS;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_ROTATION;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_STRIDE;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_TX;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_TY;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_CARD_BOTTOM;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_CARD_DX;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_CARD_DY;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_CARD_LEFT;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_CARD_RIGHT;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_CARD_TOP;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_CORNERS;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_SHADOW_DX;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_SHADOW_DY;
+import static com.xylitol.shadcardview.ShadowGeometry.SLICE_COUNT;
 
 import android.content.res.ColorStateList;
 import android.content.res.Resources;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.ColorFilter;
-import android.graphics.LinearGradient;
 import android.graphics.Paint;
-import android.graphics.Path;
 import android.graphics.PixelFormat;
-import android.graphics.RadialGradient;
 import android.graphics.Rect;
 import android.graphics.RectF;
-import android.graphics.Shader;
+import android.graphics.Region;
 import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.util.Pair;
+import android.support.annotation.RequiresApi;
 
 import java.util.Arrays;
 
@@ -28,93 +48,253 @@ import java.util.Arrays;
  * time:
  */
 public class SRoundRectDrawableWithShadow extends Drawable {
-    private int mInsetShadow = 0; // extra shadow to avoid gaps between card and shadow
-    /*
-     * This helper is set by CardView implementations.
-     * <p>
-     * Prior to API 17, canvas.drawRoundRect is expensive; which is why we need this interface
-     * to draw efficient rounded rectangles before 17.
-     * */
+    /**
+     * Draws the shadow with gradient shaders on every frame.
+     */
+    public static final int RENDER_MODE_VECTOR = 0;
+    /**
+     * Rasterizes the shadow once into a bitmap shared through {@link ShadowBitmapCache} and draws
+     * it as nine slices. Cards whose corners differ, by radius or by the corner mask, keep the
+     * vector shadow.
+     */
+    public static final int RENDER_MODE_BITMAP = 1;
+
     private Paint mPaint;
-    private Paint mCornerShadowPaint;
-    private Paint mEdgeShadowPaint;
+    // draws the card surface, each drawable has its own since helpers keep scratch objects
+    private RoundRectHelper mRoundRectHelper;
+    private RoundRectHelper.Factory mRoundRectHelperFactory;
+    // one paint per corner record of the draw list, each holding the shaders of its corner radius
+    private final Paint[] mCornerShadowPaints = new Paint[CORNER_COUNT];
+    private final Paint[] mEdgeShadowPaints = new Paint[CORNER_COUNT];
     private RectF mCardBounds;
-    private Float mCornerRadius = 0f;
-    private Path mCornerShadowPath = null;
+    // radii, shadow sizes, padding and the draw list replayed by draw()
+    private final ShadowGeometry mGeometry;
+    // corner paths and shaders borrowed from ShadowCache, one per corner record. Corners with the
+    // same radius share the same entry
+    private final ShadowCache.Entry[] mShadowComponents = new ShadowCache.Entry[CORNER_COUNT];
+
+    // shadow bitmap borrowed from ShadowBitmapCache, only set in RENDER_MODE_BITMAP
+    private Bitmap mShadowBitmap = null;
+    private Paint mShadowBitmapPaint;
+    // source and destination of the 4 corner and 4 edge slices of mShadowBitmap
+    private Rect[] mSliceSrc = null;
+    private RectF[] mSliceDst = null;
+    private float[] mSliceDstPoints = null;
+
+    // configuration shared with the drawables created from getConstantState(), see mutate()
+    private ShadowState mState;
+    private boolean mMutated = false;
+    // generation of mState last applied to the paint and the geometry, see syncState()
+    private int mStateGeneration;
 
-    // actual value set by developer
-    private Float mRawMaxShadowSize = 0f;
+    private boolean mDirty = true;
 
-    // multiplied value to account for shadow offset
-    private Float mShadowSize = 0f;
+    // set when the corner paths and shaders have to be rebuilt, bounds changes alone don't need it
+    private boolean mShadowDirty = true;
 
-    // actual value set by developer
-    private Float mRawShadowSize = 0f;
+    private SCardViewDelegate mCardDelegate;
 
-    private ColorStateList mBackground = null;
+    // while the shadow size animates, shaders stay built for the largest size of the animation
+    // and every frame scales them down, see beginShadowAnimation
+    private boolean mShadowAnimating = false;
+    private float mAnimationShadowSize = 0f;
 
-    private boolean mDirty = true;
+    // false when the card's shadow is turned off, see SCardView.setShadowEnabled
+    private boolean mDrawShadow = true;
+    // true while SCardShadowItemDecoration owns the shadow, from attach to detach of the card
+    private boolean mShadowDrawnByParent = false;
 
-    private int mShadowStartColor = 0;
+    // API 29+ recording of the shadow, created on the first hardware accelerated frame
+    private ShadowRenderNode mShadowNode;
 
-    private int mShadowEndColor = 0;
+    // surface color fading to a new state color, driven by draw(). -1 when not running
+    private long mColorTransitionStart = -1L;
+    private int mColorTransitionFrom;
+    private int mColorTransitionTo;
 
-    private boolean mAddPaddingForCorners = true;
+    // created the first time ShadowMetrics counts something for this card
+    private ShadowMetrics.CardMetrics mMetrics;
+    private boolean mInvalidatePending;
 
     /**
-     * If shadow size is set to a value above max shadow, we print a warning
+     * @deprecated use the primitive constructor, this one only unboxes its arguments.
      */
-    private boolean mPrintedShadowClipWarning = false;
-    private int mLightDirection = DIRECTION_TOP;
-    private int mCornerVisibility = NONE;
-    private SCardViewDelegate mCardDelegate;
-    private Pair<Pair<Float, Float>, Pair<Float, Float>> mTranslatePos = null;
-
+    @Deprecated
     public SRoundRectDrawableWithShadow(SCardViewDelegate cardViewDelegate, Resources resources, ColorStateList backgroundColor,
                                         Float radius, Float shadowSize, Float maxShadowSize,
                                         Integer direction, Integer cornerVisibility, Integer startColor, Integer endColor) {
-        mShadowStartColor = startColor == -1 ? resources.getColor(R.color.sl_cardview_shadow_start_color) : startColor;
-        mShadowEndColor = endColor == -1 ? resources.getColor(R.color.sl_cardview_shadow_end_color) : endColor;
-        mInsetShadow = resources.getDimensionPixelSize(R.dimen.cardview_compat_inset_shadow);
-        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        setBackground(backgroundColor);
-        mCornerShadowPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
-        mCornerShadowPaint.setStyle(Paint.Style.FILL);
-        mCornerRadius = (float) ((int) (radius + 0.5f));
-        mCardBounds = new RectF();
-        mEdgeShadowPaint = new Paint(mCornerShadowPaint);
+        this(cardViewDelegate, resources, backgroundColor, radius.floatValue(), shadowSize.floatValue(),
+                maxShadowSize.floatValue(), direction.intValue(), cornerVisibility.intValue(),
+                startColor.intValue(), endColor.intValue());
+    }
 
-        mEdgeShadowPaint.setAntiAlias(false);
-        mLightDirection = direction;
-        mCornerVisibility = cornerVisibility;
+    public SRoundRectDrawableWithShadow(SCardViewDelegate cardViewDelegate, Resources resources, ColorStateList backgroundColor,
+                                        float radius, float shadowSize, float maxShadowSize,
+                                        int direction, int cornerVisibility, int startColor, int endColor) {
+        mState = new ShadowState();
+        mState.mShadowStartColor = startColor == -1 ? resources.getColor(R.color.sl_cardview_shadow_start_color) : startColor;
+        mState.mShadowEndColor = endColor == -1 ? resources.getColor(R.color.sl_cardview_shadow_end_color) : endColor;
+        // cards left with the default colors follow the ShadowPalette
+        mState.mUsePalette = startColor == -1 && endColor == -1;
+        mState.mInsetShadow = resources.getDimensionPixelSize(R.dimen.cardview_compat_inset_shadow);
+        mState.mLightDirection = direction;
+        mState.mCornerMask = toMask(cornerVisibility);
+        mGeometry = new ShadowGeometry(mState.mInsetShadow, direction, mState.mCornerMask);
+        initPaints();
+        setBackground(backgroundColor);
+        mGeometry.setCornerRadius(radius);
+        saveCornerRadii();
         mCardDelegate = cardViewDelegate;
         setShadowSize(shadowSize, maxShadowSize);
+        if (mState.mUsePalette) {
+            ShadowPalette.register(this);
+        }
+    }
 
+    /**
+     * Creates a drawable from a constant state, reusing its resolved colors and the components it
+     * was drawn with so the first frame doesn't rebuild them. The round rect helper is a new one.
+     */
+    private SRoundRectDrawableWithShadow(ShadowState state) {
+        mState = state;
+        mGeometry = new ShadowGeometry(state.mInsetShadow, state.mLightDirection, state.mCornerMask);
+        initPaints();
+        applyState();
+    }
+
+    /**
+     * Applies the state to the surface paint, the geometry, the round rect helper and the palette
+     * registration of this drawable.
+     */
+    private void applyState() {
+        ShadowState state = mState;
+        mStateGeneration = state.mGeneration;
+        mColorTransitionStart = -1L;
+        mPaint.setColor(state.mBackground.getColorForState(getState(), state.mBackground.getDefaultColor()));
+        float[] radii = state.mCornerRadii;
+        mGeometry.setCornerRadii(radii[0], radii[1], radii[2], radii[3]);
+        mGeometry.setCornerMask(state.mCornerMask);
+        mGeometry.setShadowSize(state.mShadowSize, state.mMaxShadowSize);
+        if (Float.isNaN(state.mLightAngle)) {
+            mGeometry.setLightDirection(state.mLightDirection);
+        } else {
+            mGeometry.setLightAngle(state.mLightAngle);
+        }
+        mGeometry.setLightOffset(state.mLightOffset);
+        mGeometry.setAddPaddingForCorners(state.mAddPaddingForCorners);
+        if (mRoundRectHelperFactory != state.mRoundRectHelperFactory) {
+            mRoundRectHelperFactory = state.mRoundRectHelperFactory;
+            mRoundRectHelper = mRoundRectHelperFactory != null ? mRoundRectHelperFactory.create() : null;
+        }
+        if (state.mUsePalette) {
+            ShadowPalette.register(this);
+        } else {
+            ShadowPalette.unregister(this);
+        }
+    }
+
+    /**
+     * Catches up with the changes another drawable sharing the state made to it since this one
+     * last applied it. Drawables that weren't mutated share the state, but only the one a setter
+     * is called on rebuilds right away, the others rebuild before they are used again.
+     */
+    private void syncState() {
+        if (mStateGeneration == mState.mGeneration) {
+            return;
+        }
+        applyState();
+        mDirty = true;
+        mShadowDirty = true;
+    }
+
+    /**
+     * Records a change made to the state through this drawable, whose geometry already took it.
+     */
+    private void onStateChanged() {
+        mStateGeneration = ++mState.mGeneration;
+    }
+
+    private void initPaints() {
+        mPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+        initShadowPaints(mCornerShadowPaints, mEdgeShadowPaints);
+        mCardBounds = new RectF();
+        mShadowBitmapPaint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
+    }
+
+    /**
+     * Fills the arrays with the corner and edge paints drawShadow expects.
+     */
+    static void initShadowPaints(Paint[] cornerPaints, Paint[] edgePaints) {
+        for (int i = 0; i < CORNER_COUNT; i++) {
+            cornerPaints[i] = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+            cornerPaints[i].setStyle(Paint.Style.FILL);
+            edgePaints[i] = new Paint(cornerPaints[i]);
+            edgePaints[i].setAntiAlias(false);
+        }
     }
 
     private void setBackground(ColorStateList color) {
-        mBackground = (color == null ? ColorStateList.valueOf(Color.TRANSPARENT) : color);
-        mPaint.setColor(mBackground.getColorForState(getState(), mBackground.getDefaultColor()));
+        mState.mBackground = (color == null ? ColorStateList.valueOf(Color.TRANSPARENT) : color);
+        mColorTransitionStart = -1L;
+        mPaint.setColor(mState.mBackground.getColorForState(getState(), mState.mBackground.getDefaultColor()));
+        onStateChanged();
+    }
+
+    @Override
+    public ConstantState getConstantState() {
+        mState.mChangingConfigurations = getChangingConfigurations();
+        return mState;
     }
 
     /**
-     * Casts the value to an even integer.
+     * Gives this drawable its own copy of the state, so that changing its colors, radius or
+     * shadow doesn't leak into the other drawables created from the same constant state. The
+     * shared shadow components stay shared, they are immutable. Without it a change is seen by
+     * every drawable sharing the state, see {@link #syncState()}.
      */
-    private int toEven(Float value) {
-        int i = (int) (value + 0.5f);
-        return i % 2 == 1 ? i - 1 : i;
+    @NonNull
+    @Override
+    public Drawable mutate() {
+        if (!mMutated && super.mutate() == this) {
+            // the copy is the state as it is now, this drawable may not have applied it yet
+            syncState();
+            mState = new ShadowState(mState);
+            mMutated = true;
+        }
+        return this;
     }
 
+    @Override
+    public int getChangingConfigurations() {
+        return super.getChangingConfigurations() | mState.mChangingConfigurations;
+    }
+
+    public void setAddPaddingForCorners(boolean addPaddingForCorners) {
+        syncState();
+        if (mGeometry.setAddPaddingForCorners(addPaddingForCorners)) {
+            mState.mAddPaddingForCorners = addPaddingForCorners;
+            onStateChanged();
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * @deprecated use {@link #setAddPaddingForCorners(boolean)}.
+     */
+    @Deprecated
     public void setAddPaddingForCorners(Boolean addPaddingForCorners) {
-        mAddPaddingForCorners = addPaddingForCorners;
-        invalidateSelf();
+        setAddPaddingForCorners(addPaddingForCorners.booleanValue());
     }
 
     @Override
     public void setAlpha(int alpha) {
         mPaint.setAlpha(alpha);
-        mCornerShadowPaint.setAlpha(alpha);
-        mEdgeShadowPaint.setAlpha(alpha);
+        for (int i = 0; i < CORNER_COUNT; i++) {
+            mCornerShadowPaints[i].setAlpha(alpha);
+            mEdgeShadowPaints[i].setAlpha(alpha);
+        }
+        mShadowBitmapPaint.setAlpha(alpha);
+        invalidateShadowNode();
     }
 
     @Override
@@ -123,83 +303,102 @@ public class SRoundRectDrawableWithShadow extends Drawable {
         mDirty = true;
     }
 
-    private void setShadowSize(Float shadowSize, Float maxShadowSize) {
-        Float updateShadowSize = shadowSize;
-        Float updateMaxShadowSize = maxShadowSize;
-        if (updateShadowSize < 0f) {
-            throw new IllegalArgumentException("Invalid shadow size " + updateShadowSize
-                    + ". Must be >= 0");
-        }
-        if (updateMaxShadowSize < 0f) {
-            throw new IllegalArgumentException("Invalid max shadow size " + updateMaxShadowSize
-                    + ". Must be >= 0");
-        }
-
-        updateShadowSize = Float.valueOf(toEven(updateShadowSize));
-        updateMaxShadowSize = Float.valueOf(toEven(updateMaxShadowSize));
-        if (updateShadowSize > updateMaxShadowSize) {
-            updateShadowSize = updateMaxShadowSize;
-            if (!mPrintedShadowClipWarning) {
-                mPrintedShadowClipWarning = true;
-            }
-        }
-        if (mRawShadowSize == updateShadowSize && mRawMaxShadowSize == updateMaxShadowSize) {
+    private void setShadowSize(float shadowSize, float maxShadowSize) {
+        syncState();
+        if (!mGeometry.setShadowSize(shadowSize, maxShadowSize)) {
             return;
         }
-        mRawShadowSize = updateShadowSize;
-        mRawMaxShadowSize = updateMaxShadowSize;
-        mTranslatePos = calculateShadowDirection();
-        mShadowSize = (updateShadowSize * SHADOW_MULTIPLIER + Float.valueOf(mInsetShadow) + .5f);
+        saveShadowSize();
         mDirty = true;
+        mShadowDirty = true;
         invalidateSelf();
     }
 
     @Override
     public boolean getPadding(@NonNull Rect padding) {
-        int vOffset = (int) Math.ceil(calculateVerticalPadding(mRawMaxShadowSize, mCornerRadius,
-                mAddPaddingForCorners));
-        int hOffset = (int) Math.ceil(calculateHorizontalPadding(mRawMaxShadowSize, mCornerRadius,
-                mAddPaddingForCorners));
+        syncState();
+        int vOffset = (int) Math.ceil(mGeometry.getVerticalPadding());
+        int hOffset = (int) Math.ceil(mGeometry.getHorizontalPadding());
         padding.set(hOffset, vOffset, hOffset, vOffset);
+        return true;
+    }
 
+    /**
+     * The shadow math lives in {@link ShadowGeometry}, this copy is kept for existing callers.
+     */
+    public static final float SHADOW_MULTIPLIER = ShadowGeometry.SHADOW_MULTIPLIER;
 
+    /**
+     * Only the surface color depends on the state, the shadow and the bounds are left alone so a
+     * pressed card costs a single redraw.
+     */
+    @Override
+    protected boolean onStateChange(int[] state) {
+        int newColor = mState.mBackground.getColorForState(state, mState.mBackground.getDefaultColor());
+        int targetColor = mColorTransitionStart >= 0L ? mColorTransitionTo : mPaint.getColor();
+        if (targetColor == newColor) {
+            return false;
+        }
+        if (mState.mColorTransitionDuration > 0L) {
+            // start from the color on screen, which may be halfway through another transition
+            mColorTransitionFrom = mPaint.getColor();
+            mColorTransitionTo = newColor;
+            mColorTransitionStart = SystemClock.uptimeMillis();
+        } else {
+            mColorTransitionStart = -1L;
+            mPaint.setColor(newColor);
+        }
+        invalidateSelf();
         return true;
     }
 
-    // used to calculate content padding
-    private static double COS_45 = Math.cos(Math.toRadians(45.0));
-    public static RoundRectHelper sRoundRectHelper = null;
-    public static float SHADOW_MULTIPLIER = 1.5f;
-
-    private static double calculateVerticalPadding(Float maxShadowSize, Float cornerRadius,
-                                                   Boolean addPaddingForCorners) {
-        return addPaddingForCorners ?
-                (float) (maxShadowSize * SHADOW_MULTIPLIER + (1 - COS_45) * cornerRadius) :
-                maxShadowSize * SHADOW_MULTIPLIER;
+    /**
+     * Fades the surface color over the given duration when the state changes, 0 switches at once.
+     */
+    public void setColorTransitionDuration(long durationMillis) {
+        if (durationMillis < 0L) {
+            throw new IllegalArgumentException("Invalid duration " + durationMillis + ". Must be >= 0");
+        }
+        mState.mColorTransitionDuration = durationMillis;
     }
 
-    private static double calculateHorizontalPadding(Float maxShadowSize, Float cornerRadius,
-                                                     Boolean addPaddingForCorners) {
-        return addPaddingForCorners ?
-                (float) (maxShadowSize + (1 - COS_45) * cornerRadius) :
-                maxShadowSize;
+    public long getColorTransitionDuration() {
+        return mState.mColorTransitionDuration;
     }
 
-    @Override
-    protected boolean onStateChange(int[] state) {
-        int newColor = mBackground.getColorForState(state, mBackground.getDefaultColor());
-        if (mPaint.getColor() == newColor) {
+    /**
+     * Moves the running color transition to the current frame.
+     *
+     * @return whether it needs another frame
+     */
+    private boolean updateColorTransition() {
+        long elapsed = SystemClock.uptimeMillis() - mColorTransitionStart;
+        if (elapsed >= mState.mColorTransitionDuration) {
+            mColorTransitionStart = -1L;
+            mPaint.setColor(mColorTransitionTo);
             return false;
         }
-        mPaint.setColor(newColor);
-        mDirty = true;
-        invalidateSelf();
+        float fraction = (float) elapsed / mState.mColorTransitionDuration;
+        mPaint.setColor(blendColors(mColorTransitionFrom, mColorTransitionTo, fraction));
         return true;
     }
 
+    /**
+     * Interpolates each ARGB channel separately.
+     */
+    static int blendColors(int from, int to, float fraction) {
+        int color = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int a = (from >>> shift) & 0xff;
+            int b = (to >>> shift) & 0xff;
+            color |= ((int) (a + (b - a) * fraction + .5f) & 0xff) << shift;
+        }
+        return color;
+    }
+
     @Override
     public boolean isStateful() {
-        return mBackground != null && mBackground.isStateful() || super.isStateful();
+        return mState.mBackground != null && mState.mBackground.isStateful() || super.isStateful();
     }
 
     @Override
@@ -212,282 +411,625 @@ public class SRoundRectDrawableWithShadow extends Drawable {
         return PixelFormat.TRANSLUCENT;
     }
 
-    public void setCornerRadius(Float radius) {
-        Float updateRadius = radius;
-        if (updateRadius < 0f) {
-            throw new IllegalArgumentException("Invalid radius $updateRadius. Must be >= 0");
+    public void setCornerRadius(float radius) {
+        syncState();
+        if (!mGeometry.setCornerRadius(radius)) {
+            return;
+        }
+        saveCornerRadii();
+        mDirty = true;
+        mShadowDirty = true;
+        invalidateSelf();
+    }
+
+    /**
+     * Gives each corner its own radius, the padding makes room for the largest one.
+     */
+    public void setCornerRadii(float topLeft, float topRight, float bottomRight, float bottomLeft) {
+        syncState();
+        if (!mGeometry.setCornerRadii(topLeft, topRight, bottomRight, bottomLeft)) {
+            return;
+        }
+        saveCornerRadii();
+        mDirty = true;
+        mShadowDirty = true;
+        invalidateSelf();
+    }
+
+    /**
+     * Sets the rounded corners, a combination of the CORNER_ flags of {@link CornerVisibility}.
+     * The other corners are drawn square.
+     */
+    public void setCornerMask(int cornerMask) {
+        syncState();
+        if (!mGeometry.setCornerMask(cornerMask)) {
+            return;
+        }
+        mState.mCornerMask = cornerMask;
+        onStateChanged();
+        mDirty = true;
+        mShadowDirty = true;
+        invalidateSelf();
+    }
+
+    public int getCornerMask() {
+        return mState.mCornerMask;
+    }
+
+    /**
+     * Sets the light to one of the {@link ShadowDirection} constants, dropping any light angle.
+     */
+    public void setLightDirection(int direction) {
+        syncState();
+        boolean changed = mGeometry.setLightDirection(direction);
+        mState.mLightDirection = direction;
+        mState.mLightAngle = Float.NaN;
+        onStateChanged();
+        if (changed) {
+            mDirty = true;
+            invalidateSelf();
+        }
+    }
+
+    /**
+     * Sets the light to come from the given angle, in degrees clockwise from the right, 270 being
+     * a light above the card. Overrides the light direction.
+     */
+    public void setLightAngle(float degrees) {
+        syncState();
+        boolean changed = mGeometry.setLightAngle(degrees);
+        mState.mLightAngle = degrees;
+        onStateChanged();
+        if (changed) {
+            mDirty = true;
+            invalidateSelf();
         }
-        updateRadius = Float.valueOf(updateRadius + .5f);
-        if (mCornerRadius == updateRadius) {
+    }
+
+    /**
+     * Returns the light angle, NaN while the light is set by direction.
+     */
+    public float getLightAngle() {
+        return mState.mLightAngle;
+    }
+
+    /**
+     * Sets how far the card moves towards the light, at most half the max elevation. Negative
+     * values restore the default, half the elevation.
+     */
+    public void setLightOffset(float offset) {
+        syncState();
+        if (!mGeometry.setLightOffset(offset)) {
             return;
         }
-        mCornerRadius = updateRadius;
+        mState.mLightOffset = offset < 0f ? -1f : offset;
+        onStateChanged();
         mDirty = true;
         invalidateSelf();
     }
 
+    public float getLightOffset() {
+        return mState.mLightOffset;
+    }
+
+    private void saveCornerRadii() {
+        for (int i = 0; i < CORNER_COUNT; i++) {
+            mState.mCornerRadii[i] = mGeometry.getCornerRadius(i);
+        }
+        onStateChanged();
+    }
+
+    /**
+     * @deprecated use {@link #setCornerRadius(float)}.
+     */
+    @Deprecated
+    public void setCornerRadius(Float radius) {
+        setCornerRadius(radius.floatValue());
+    }
+
     @Override
     public void draw(@NonNull Canvas canvas) {
+        long drawStart = ShadowMetrics.sEnabled ? System.nanoTime() : 0L;
+        mInvalidatePending = false;
+        boolean colorTransitionRunning = mColorTransitionStart >= 0L && updateColorTransition();
+        ensureComponents();
+
+        float[] drawList = mGeometry.getDrawList();
+        canvas.translate(drawList[DL_SHADOW_DX], drawList[DL_SHADOW_DY]);
+        if (mDrawShadow && !mShadowDrawnByParent) {
+            int saved = canvas.save();
+            if (mState.mReduceOverdraw && isSurfaceOpaque()) {
+                // the opaque card hides whatever the shadow would paint under it
+                clipOutSurface(canvas, drawList);
+            }
+            if (mState.mUseRenderNode && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                    && canvas.isHardwareAccelerated()) {
+                drawShadowRenderNode(canvas, drawList);
+            } else {
+                drawShadowContent(canvas, drawList);
+            }
+            canvas.restoreToCount(saved);
+        }
+        canvas.translate(drawList[DL_CARD_DX], drawList[DL_CARD_DY]);
+        if (mRoundRectHelper != null) {
+            mRoundRectHelper.drawRoundRect(canvas, mCardBounds, mGeometry.getResolvedRadii(), mPaint);
+        }
+        if (drawStart != 0L) {
+            ShadowMetrics.recordDraw(metrics(), System.nanoTime() - drawStart);
+        }
+        if (colorTransitionRunning) {
+            invalidateSelf();
+        }
+    }
+
+    @Override
+    public void invalidateSelf() {
+        if (ShadowMetrics.sEnabled) {
+            if (mInvalidatePending) {
+                // the previous invalidation hasn't been drawn, this one costs a callback for nothing
+                ShadowMetrics.recordRedundantInvalidate(metrics());
+            }
+            mInvalidatePending = true;
+        }
+        super.invalidateSelf();
+    }
+
+    /**
+     * Returns the counters of this card, or null when {@link ShadowMetrics} never was enabled
+     * while it was drawn.
+     */
+    @Nullable
+    ShadowMetrics.CardMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    private ShadowMetrics.CardMetrics metrics() {
+        if (mMetrics == null) {
+            mMetrics = new ShadowMetrics.CardMetrics(this);
+        }
+        return mMetrics;
+    }
+
+    boolean isSurfaceOpaque() {
+        return mPaint.getAlpha() == 255 && mPaint.getColorFilter() == null;
+    }
+
+    /**
+     * Clips out the card surface minus its corners, inset by a pixel so that the anti-aliased
+     * card edges still blend over the shadow. Coordinates are the ones of the shadow pass, the
+     * largest radius keeps clear of every corner.
+     */
+    private void clipOutSurface(Canvas canvas, float[] drawList) {
+        float radius = mGeometry.getCornerRadius();
+        float left = mCardBounds.left + drawList[DL_CARD_DX] + 1f;
+        float top = mCardBounds.top + drawList[DL_CARD_DY] + 1f;
+        float right = mCardBounds.right + drawList[DL_CARD_DX] - 1f;
+        float bottom = mCardBounds.bottom + drawList[DL_CARD_DY] - 1f;
+        clipOutRect(canvas, left, top + radius, right, bottom - radius);
+        clipOutRect(canvas, left + radius, top, right - radius, bottom);
+    }
+
+    @SuppressWarnings("deprecation")
+    static void clipOutRect(Canvas canvas, float left, float top, float right, float bottom) {
+        if (left >= right || top >= bottom) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            canvas.clipOutRect(left, top, right, bottom);
+        } else {
+            canvas.clipRect(left, top, right, bottom, Region.Op.DIFFERENCE);
+        }
+    }
+
+    private void ensureComponents() {
+        syncState();
         if (mDirty) {
             buildComponents(getBounds());
             mDirty = false;
         }
+    }
 
-        if (mTranslatePos != null) {
-            canvas.translate(mTranslatePos.first.first, mTranslatePos.first.second);
-            drawShadow(canvas);
-            canvas.translate(mTranslatePos.second.first, mTranslatePos.second.second);
-            if (sRoundRectHelper != null) {
-                sRoundRectHelper.drawRoundRect(canvas, mCardBounds, mCornerRadius, mCornerVisibility, mPaint);
+    /**
+     * Draws the shadow alone with the given paints, one per corner record, whose shaders must come
+     * from {@link #getShadowComponents(int)}. Used to draw the shadows of many cards in one pass.
+     */
+    void drawShadow(Canvas canvas, Paint[] cornerPaints, Paint[] edgePaints) {
+        ensureComponents();
+        float[] drawList = mGeometry.getDrawList();
+        int saved = canvas.save();
+        canvas.translate(drawList[DL_SHADOW_DX], drawList[DL_SHADOW_DY]);
+        drawShadow(canvas, drawList, cornerPaints, edgePaints);
+        canvas.restoreToCount(saved);
+    }
+
+    /**
+     * Replays the corner records of the draw list, a corner path followed by its edge. Square
+     * corners are records of radius 0, the loop doesn't care about the corner mask.
+     */
+    private void drawShadow(Canvas canvas, float[] drawList, Paint[] cornerPaints, Paint[] edgePaints) {
+        for (int i = 0; i < CORNER_COUNT; i++) {
+            int o = DL_CORNERS + i * CORNER_STRIDE;
+            float radius = drawList[o + CORNER_RADIUS];
+            // scale is 1 unless the shadow size animates
+            float scale = mShadowAnimating ? (radius + mGeometry.getShadowSize())
+                    / (radius + mAnimationShadowSize) : 1f;
+            int saved = canvas.save();
+            canvas.translate(drawList[o + CORNER_TX], drawList[o + CORNER_TY]);
+            float rotation = drawList[o + CORNER_ROTATION];
+            if (rotation != 0f) {
+                canvas.rotate(rotation);
+            }
+            if (scale != 1f) {
+                canvas.scale(scale, scale);
             }
+            canvas.drawPath(mShadowComponents[i].cornerShadowPath, cornerPaints[i]);
+            if (drawList[o + CORNER_HAS_EDGE] != 0f) {
+                if (scale != 1f) {
+                    // only the edge thickness follows the shadow size, not its length
+                    canvas.scale(1f / scale, 1f);
+                }
+                canvas.drawRect(0f, drawList[o + CORNER_EDGE_TOP] / scale, drawList[o + CORNER_EDGE_RIGHT],
+                        drawList[o + CORNER_EDGE_BOTTOM] / scale, edgePaints[i]);
+            }
+            canvas.restoreToCount(saved);
+        }
+    }
+
+    private void drawShadowContent(Canvas canvas, float[] drawList) {
+        if (mShadowBitmap != null) {
+            drawShadowBitmap(canvas);
+        } else {
+            drawShadow(canvas, drawList, mCornerShadowPaints, mEdgeShadowPaints);
         }
     }
 
     /**
-     * According to the position of light,calculate shadow's position of the card
+     * Replays the recorded shadow, recording it first if the shadow changed since. The overdraw
+     * clip stays on the outer canvas, it depends on the surface color, not on the shadow.
      */
-    private Pair<Pair<Float, Float>, Pair<Float, Float>> calculateShadowDirection() {
-        float moveDistance = mRawShadowSize / 2;
+    @RequiresApi(29)
+    private void drawShadowRenderNode(Canvas canvas, float[] drawList) {
+        if (mShadowNode == null) {
+            mShadowNode = new ShadowRenderNode();
+        }
+        if (!mShadowNode.isValid()) {
+            Canvas recording = mShadowNode.beginRecording(getBounds());
+            try {
+                drawShadowContent(recording, drawList);
+            } finally {
+                mShadowNode.endRecording();
+            }
+            if (ShadowMetrics.sEnabled) {
+                ShadowMetrics.recordShadowRecording(metrics());
+            }
+        }
+        mShadowNode.draw(canvas);
+    }
 
-        if (mLightDirection == DIRECTION_NONE) {
-            Pair shadowPos = new Pair(0f, 0f);
-            Pair rectPos = new Pair(0f, 0f);
-            return new Pair<>(shadowPos, rectPos);
-        } else if (mLightDirection == DIRECTION_LEFT) {
-            Pair shadowPos = new Pair(0f, 0f);
-            Pair rectPos = new Pair(-moveDistance, 0f);
-            return new Pair<>(shadowPos, rectPos);
-        } else if (mLightDirection == DIRECTION_RIGHT) {
-            Pair shadowPos = new Pair(0f, 0f);
-            Pair rectPos = new Pair(moveDistance, 0f);
-            return new Pair<>(shadowPos, rectPos);
-        } else if (mLightDirection == DIRECTION_TOP) {
+    private void invalidateShadowNode() {
+        if (mShadowNode != null) {
+            mShadowNode.invalidate();
+        }
+    }
 
-            Pair shadowPos = new Pair(0f, 0f);
-            Pair rectPos = new Pair(0f, -moveDistance);
-            return new Pair<>(shadowPos, rectPos);
-        } else if (mLightDirection == DIRECTION_BOTTOM) {
+    /**
+     * Sets whether the shadow is recorded once into a RenderNode and replayed until it changes,
+     * on API 29+ hardware accelerated canvases. On by default.
+     */
+    public void setUseRenderNode(boolean useRenderNode) {
+        if (mState.mUseRenderNode == useRenderNode) {
+            return;
+        }
+        mState.mUseRenderNode = useRenderNode;
+        if (!useRenderNode && mShadowNode != null) {
+            mShadowNode.discard();
+            mShadowNode = null;
+        }
+        invalidateSelf();
+    }
 
-            Pair shadowPos = new Pair(0f, 0f);
-            Pair rectPos = new Pair(0f, moveDistance);
-            return new Pair<>(shadowPos, rectPos);
-        } else if (mLightDirection == DIRECTION_LT) {
+    public boolean getUseRenderNode() {
+        return mState.mUseRenderNode;
+    }
 
-            Pair shadowPos = new Pair(0f, moveDistance);
-            Pair rectPos = new Pair(-moveDistance, -moveDistance);
-            return new Pair<>(shadowPos, rectPos);
-        } else if (mLightDirection == DIRECTION_RT) {
+    private void drawShadowBitmap(Canvas canvas) {
+        for (int i = 0; i < mSliceDst.length; i++) {
+            RectF dst = mSliceDst[i];
+            // edges shorter than the corners are skipped like in drawShadow
+            if (dst.right > dst.left && dst.bottom > dst.top) {
+                canvas.drawBitmap(mShadowBitmap, mSliceSrc[i], dst, mShadowBitmapPaint);
+            }
+        }
+    }
 
-            Pair shadowPos = new Pair(0f, moveDistance);
-            Pair rectPos = new Pair(moveDistance, -moveDistance);
-            return new Pair<>(shadowPos, rectPos);
-        } else if (mLightDirection == DIRECTION_LB) {
+    /**
+     * Splits mShadowBitmap into its corner and edge slices, in the order
+     * LT, top, RT, left, right, LB, bottom, RB.
+     */
+    private void buildSliceSources() {
+        if (mSliceSrc == null) {
+            mSliceSrc = new Rect[SLICE_COUNT];
+            mSliceDst = new RectF[SLICE_COUNT];
+            mSliceDstPoints = new float[SLICE_COUNT * 4];
+            for (int i = 0; i < SLICE_COUNT; i++) {
+                mSliceSrc[i] = new Rect();
+                mSliceDst[i] = new RectF();
+            }
+        }
+        int corner = (mShadowBitmap.getWidth() - 1) / 2;
+        int i = 0;
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                if (row == 1 && col == 1) {
+                    // the center is transparent, the card covers it
+                    continue;
+                }
+                mSliceSrc[i++].set(sliceStart(col, corner), sliceStart(row, corner),
+                        sliceStart(col + 1, corner), sliceStart(row + 1, corner));
+            }
+        }
+    }
 
-            Pair shadowPos = new Pair(0f, -moveDistance);
-            Pair rectPos = new Pair(-moveDistance, moveDistance);
-            return new Pair<>(shadowPos, rectPos);
-        } else if (mLightDirection == DIRECTION_RB) {
+    private static int sliceStart(int index, int corner) {
+        return index == 0 ? 0 : index == 1 ? corner : index == 2 ? corner + 1 : 2 * corner + 1;
+    }
 
-            Pair shadowPos = new Pair(0f, -moveDistance);
-            Pair rectPos = new Pair(moveDistance, moveDistance);
-            return new Pair<>(shadowPos, rectPos);
-        } else {
-            throw new IllegalArgumentException("invalid light direction exception");
+    /**
+     * Lays the slices out around the corner centers used by drawShadow.
+     */
+    private void buildSliceDestinations() {
+        mGeometry.buildSliceDestinations((mShadowBitmap.getWidth() - 1) / 2, mSliceDstPoints);
+        for (int i = 0; i < SLICE_COUNT; i++) {
+            mSliceDst[i].set(mSliceDstPoints[i * 4], mSliceDstPoints[i * 4 + 1],
+                    mSliceDstPoints[i * 4 + 2], mSliceDstPoints[i * 4 + 3]);
         }
     }
 
-    private void drawShadow(Canvas canvas) {
-        RectF visibility = calculateCornerVisibility(); //顺时针 - 可见性
-        // LT
-        int saved = canvas.save();
-        drawLTCorner(canvas, visibility.left);
-        canvas.restoreToCount(saved);
-        // RB
-        saved = canvas.save();
-        drawRBCorner(canvas, visibility.right);
-        canvas.restoreToCount(saved);
-        // LB
-        saved = canvas.save();
-        drawLBCorner(canvas, visibility.bottom);
-        canvas.restoreToCount(saved);
-        // RT
-        saved = canvas.save();
-        drawRTCorner(canvas, visibility.top);
-        canvas.restoreToCount(saved);
+    /**
+     * Returns the components already picked for an earlier corner record of the same radius.
+     */
+    private ShadowCache.Entry findComponents(int record, float radius) {
+        float[] drawList = mGeometry.getDrawList();
+        for (int i = 0; i < record; i++) {
+            if (drawList[DL_CORNERS + i * CORNER_STRIDE + CORNER_RADIUS] == radius) {
+                return mShadowComponents[i];
+            }
+        }
+        return null;
     }
 
-    private RectF calculateCornerVisibility() {
-
-        if (mCornerVisibility == NOLEFTCORNER) {
-            return new RectF(0f, mCornerRadius, mCornerRadius, 0f);
-        } else if (mCornerVisibility == NORIGHTCORNER) {
-            return new RectF(mCornerRadius, 0f, 0f, mCornerRadius);
-        } else if (mCornerVisibility == NOTOPCORNER) {
-            return new RectF(0f, 0f, mCornerRadius, mCornerRadius);
-        } else if (mCornerVisibility == NOBOTTOMCORNER) {
-            return new RectF(mCornerRadius, mCornerRadius, 0f, 0f);
-        } else if (mCornerVisibility == NOLT_RBCORNER) {
-            return new RectF(0f, mCornerRadius, 0f, mCornerRadius);
-        } else if (mCornerVisibility == NORT_LBCORNER) {
-            return new RectF(mCornerRadius, 0f, mCornerRadius, 0f);
-        } else {
-            return new RectF(mCornerRadius, mCornerRadius, mCornerRadius, mCornerRadius);
-        }
-    }
-
-    private void drawRTCorner(Canvas canvas, Float cornerRadius) {
-        float edgeShadowTop = -cornerRadius - mShadowSize;
-        float inset = cornerRadius + mInsetShadow + mRawShadowSize / 2;
-        float right = mCardBounds.height() - 2 * inset;
-        boolean drawVerticalEdges = right > 0;
-        buildShadowCorners(cornerRadius);
-        canvas.translate(mCardBounds.right - inset, mCardBounds.top + inset);
-        canvas.rotate(90f);
-        canvas.drawPath(mCornerShadowPath, mCornerShadowPaint);
-        if (drawVerticalEdges) {
-            if (mCornerVisibility == NOTOPCORNER || mCornerVisibility == NORT_LBCORNER) {
-                right -= mCornerRadius;
-            }
-            if (mCornerVisibility == NOBOTTOMCORNER || mCornerVisibility == NOLT_RBCORNER) {
-                right += mCornerRadius;
+    private void buildComponents(Rect bounds) {
+        boolean shadowRebuilt = mShadowDirty;
+        mGeometry.build(bounds.left, bounds.top, bounds.right, bounds.bottom);
+        float[] drawList = mGeometry.getDrawList();
+        mCardBounds.set(drawList[DL_CARD_LEFT], drawList[DL_CARD_TOP], drawList[DL_CARD_RIGHT],
+                drawList[DL_CARD_BOTTOM]);
+        if (mShadowDirty) {
+            // paths and shaders only depend on radius, shadow size and colors, so a bounds
+            // change alone keeps them
+            float shadowSize = mShadowAnimating ? mAnimationShadowSize : mGeometry.getShadowSize();
+            int[] palette = mState.mUsePalette ? ShadowPalette.getColors() : null;
+            int startColor = palette != null ? palette[0] : mState.mShadowStartColor;
+            int endColor = palette != null ? palette[1] : mState.mShadowEndColor;
+            ShadowCache.Entry[] shared = mState.mComponents;
+            for (int i = 0; i < CORNER_COUNT; i++) {
+                float radius = drawList[DL_CORNERS + i * CORNER_STRIDE + CORNER_RADIUS];
+                ShadowCache.Entry entry = findComponents(i, radius);
+                if (entry == null && shared != null && shared[i].key.matches(radius, shadowSize,
+                        startColor, endColor)) {
+                    // drawn by a drawable sharing this state already, even if ShadowCache evicted it
+                    entry = shared[i];
+                }
+                if (entry == null) {
+                    entry = ShadowCache.obtain(radius, shadowSize, startColor, endColor,
+                            ShadowMetrics.sEnabled ? metrics() : null);
+                }
+                mShadowComponents[i] = entry;
+                mCornerShadowPaints[i].setShader(entry.cornerShader);
+                mEdgeShadowPaints[i].setShader(entry.edgeShader);
             }
-            canvas.drawRect(0f, edgeShadowTop, right, -cornerRadius, mEdgeShadowPaint);
-        }
-    }
-
-    private void drawRBCorner(Canvas canvas, Float cornerRadius) {
-        float edgeShadowTop = -cornerRadius - mShadowSize;
-        float inset = cornerRadius + mInsetShadow + mRawShadowSize / 2;
-        boolean drawHorizontalEdges = mCardBounds.width() - 2 * inset > 0;
-
-        buildShadowCorners(cornerRadius);
-        canvas.translate(mCardBounds.right - inset, mCardBounds.bottom - inset);
-        canvas.rotate(180f);
-        canvas.drawPath(mCornerShadowPath, mCornerShadowPaint);
-        if (drawHorizontalEdges) {
-            float right = mCardBounds.width() - 2 * inset;
-            if (mCornerVisibility == NOLEFTCORNER || mCornerVisibility == NORT_LBCORNER)
-                right += mCornerRadius;
-            if (mCornerVisibility == NORIGHTCORNER || mCornerVisibility == NOLT_RBCORNER)
-                right -= mCornerRadius;
-            canvas.drawRect(0f, edgeShadowTop, right, -cornerRadius, mEdgeShadowPaint);
-        }
-    }
-
-    private void drawLBCorner(Canvas canvas, Float cornerRadius) {
-        buildShadowCorners(cornerRadius);
-        float edgeShadowTop = -cornerRadius - mShadowSize;
-        float inset = cornerRadius + mInsetShadow + mRawShadowSize / 2;
-        float right = mCardBounds.height() - 2 * inset;
-        boolean drawVerticalEdges = right > 0;
-        canvas.translate(mCardBounds.left + inset, mCardBounds.bottom - inset);
-        canvas.rotate(270f);
-        canvas.drawPath(mCornerShadowPath, mCornerShadowPaint);
-        if (drawVerticalEdges) {
-            if (mCornerVisibility == NOTOPCORNER || mCornerVisibility == NOLT_RBCORNER) {
-                right += mCornerRadius;
+            if (!mShadowAnimating && !Arrays.equals(shared, mShadowComponents)) {
+                mState.mComponents = mShadowComponents.clone();
             }
-            if (mCornerVisibility == NOBOTTOMCORNER || mCornerVisibility == NORT_LBCORNER) {
-                right -= mCornerRadius;
+            if (mState.mShadowRenderMode == RENDER_MODE_BITMAP && mGeometry.isUniform() && !mShadowAnimating) {
+                mShadowBitmap = ShadowBitmapCache.obtain(mGeometry.getCornerRadius(), mGeometry.getShadowSize(),
+                        startColor, endColor);
+                buildSliceSources();
+            } else {
+                mShadowBitmap = null;
             }
-            canvas.drawRect(0f, edgeShadowTop, right, -cornerRadius, mEdgeShadowPaint);
+            mShadowDirty = false;
+        }
+        if (mShadowBitmap != null) {
+            buildSliceDestinations();
+        }
+        // bounds or shadow changed, the recorded shadow is stale
+        invalidateShadowNode();
+        if (ShadowMetrics.sEnabled) {
+            ShadowMetrics.recordBuild(metrics(), shadowRebuilt);
         }
     }
 
-    private void drawLTCorner(Canvas canvas, Float cornerRadius) {
-        float edgeShadowTop = -cornerRadius - mShadowSize;
-        float inset = cornerRadius + mInsetShadow + mRawShadowSize / 2;
-        boolean drawHorizontalEdges = mCardBounds.width() - 2 * inset > 0;
-        buildShadowCorners(cornerRadius);
-        canvas.translate(mCardBounds.left + inset, mCardBounds.top + inset);
-        canvas.drawPath(mCornerShadowPath, mCornerShadowPaint);
-        if (drawHorizontalEdges) {
-            float right = mCardBounds.width() - 2 * inset;
-            if (mCornerVisibility == NORIGHTCORNER || mCornerVisibility == NORT_LBCORNER)
-                right += mCornerRadius;
-            if (mCornerVisibility == NOLEFTCORNER || mCornerVisibility == NOLT_RBCORNER)
-                right -= mCornerRadius;
-            canvas.drawRect(0f, edgeShadowTop, right, -cornerRadius, mEdgeShadowPaint);
+    /**
+     * Switches between {@link #RENDER_MODE_VECTOR} and {@link #RENDER_MODE_BITMAP}.
+     */
+    public void setShadowRenderMode(int renderMode) {
+        if (renderMode != RENDER_MODE_VECTOR && renderMode != RENDER_MODE_BITMAP) {
+            throw new IllegalArgumentException("Invalid render mode " + renderMode);
         }
+        if (mState.mShadowRenderMode == renderMode) {
+            return;
+        }
+        mState.mShadowRenderMode = renderMode;
+        onStateChanged();
+        mDirty = true;
+        mShadowDirty = true;
+        invalidateSelf();
     }
 
-    private void buildShadowCorners(Float cornerRadius) {
-        RectF innerBounds = new RectF(-cornerRadius, -cornerRadius, cornerRadius, cornerRadius);
-        RectF outerBounds = new RectF(innerBounds);
-        outerBounds.inset(-mShadowSize, -mShadowSize);
+    public int getShadowRenderMode() {
+        return mState.mShadowRenderMode;
+    }
 
-        if (mCornerShadowPath == null) {
-            mCornerShadowPath = new Path();
-        } else {
-            mCornerShadowPath.reset();
-        }
-        mCornerShadowPath.setFillType(Path.FillType.EVEN_ODD);
-        mCornerShadowPath.moveTo(-cornerRadius, 0f);
-        mCornerShadowPath.rLineTo(-mShadowSize, 0f);
-        // outer arc
-        mCornerShadowPath.arcTo(outerBounds, 180f, 90f, false);
-        // inner arc
-        mCornerShadowPath.arcTo(innerBounds, 270f, -90f, false);
-        mCornerShadowPath.close();
-        float startRatio = cornerRadius / (cornerRadius + mShadowSize);
-        mCornerShadowPaint.setShader(new RadialGradient(0f, 0f, cornerRadius + mShadowSize,
-                new int[]{mShadowStartColor, mShadowStartColor, mShadowEndColor},
-                new float[]{0f, startRatio, 1f},
-                Shader.TileMode.CLAMP));
-
-        // we offset the content shadowSize/2 pixels up to make it more realistic.
-        // this is why edge shadow shader has some extra space
-        // When drawing bottom edge shadow, we use that extra space.
-        mEdgeShadowPaint.setShader(new LinearGradient(0f, -cornerRadius + mShadowSize, 0f,
-                -cornerRadius - mShadowSize,
-                new int[]{mShadowStartColor, mShadowStartColor, mShadowEndColor},
-                new float[]{0f, .5f, 1f}, Shader.TileMode.CLAMP));
-        mEdgeShadowPaint.setAntiAlias(false);
+    /**
+     * When the card surface is opaque, skips rasterizing the shadow under it. Translucent cards
+     * keep the full shadow since it shows through.
+     */
+    public void setReduceOverdraw(boolean reduceOverdraw) {
+        if (mState.mReduceOverdraw == reduceOverdraw) {
+            return;
+        }
+        mState.mReduceOverdraw = reduceOverdraw;
+        invalidateSelf();
     }
 
-    private void buildComponents(Rect bounds) {
-        // Card is offset SHADOW_MULTIPLIER * maxShadowSize to account for the shadow shift.
-        // We could have different top-bottom offsets to avoid extra gap above but in that case
-        // center aligning Views inside the CardView would be problematic.
-        float verticalOffset = mRawMaxShadowSize * SHADOW_MULTIPLIER;
-        mCardBounds.set(bounds.left + mRawMaxShadowSize, bounds.top + verticalOffset,
-                bounds.right - mRawMaxShadowSize, bounds.bottom - verticalOffset);
-        buildShadowCorners(mCornerRadius);
+    public boolean getReduceOverdraw() {
+        return mState.mReduceOverdraw;
     }
 
-    Float getCornerRadius() {
-        return mCornerRadius;
+    /**
+     * Turns drawing of the shadow off, the card surface and the padding stay the same.
+     */
+    void setDrawShadow(boolean drawShadow) {
+        if (mDrawShadow == drawShadow) {
+            return;
+        }
+        mDrawShadow = drawShadow;
+        invalidateSelf();
+    }
+
+    boolean getDrawShadow() {
+        return mDrawShadow;
+    }
+
+    /**
+     * Hands the shadow to the parent, or takes it back. Unlike {@link #setDrawShadow} it doesn't
+     * turn the shadow off, the parent keeps drawing it.
+     */
+    void setShadowDrawnByParent(boolean drawnByParent) {
+        if (mShadowDrawnByParent == drawnByParent) {
+            return;
+        }
+        mShadowDrawnByParent = drawnByParent;
+        invalidateSelf();
+    }
+
+    boolean getShadowDrawnByParent() {
+        return mShadowDrawnByParent;
+    }
+
+    /**
+     * Returns the components of a corner record, in the draw list order LT, RB, LB, RT.
+     */
+    ShadowCache.Entry getShadowComponents(int record) {
+        ensureComponents();
+        return mShadowComponents[record];
+    }
+
+    void setRoundRectHelperFactory(RoundRectHelper.Factory factory) {
+        mState.mRoundRectHelperFactory = factory;
+        mRoundRectHelperFactory = factory;
+        mRoundRectHelper = factory != null ? factory.create() : null;
+        onStateChanged();
+        invalidateSelf();
+    }
+
+    /**
+     * Returns the largest corner radius.
+     */
+    float getCornerRadius() {
+        syncState();
+        return mGeometry.getCornerRadius();
+    }
+
+    /**
+     * Returns whether every corner is visible and has the same radius.
+     */
+    boolean hasUniformCorners() {
+        syncState();
+        return mGeometry.isUniform();
     }
 
     void getMaxShadowAndCornerPadding(Rect into) {
         getPadding(into);
     }
 
-    void setShadowSize(Float size) {
-        setShadowSize(size, mRawMaxShadowSize);
+    void setShadowSize(float size) {
+        syncState();
+        setShadowSize(size, mGeometry.getRawMaxShadowSize());
+    }
+
+    void setMaxShadowSize(float size) {
+        syncState();
+        setShadowSize(mGeometry.getRawShadowSize(), size);
+    }
+
+    float getShadowSize() {
+        syncState();
+        return mGeometry.getRawShadowSize();
     }
 
-    void setMaxShadowSize(Float size) {
-        setShadowSize(mRawShadowSize, size);
+    float getMaxShadowSize() {
+        syncState();
+        return mGeometry.getRawMaxShadowSize();
+    }
+
+    /**
+     * Starts animating the shadow size between the given elevations. Shaders are built once for
+     * the larger one, frames set with {@link #setAnimatedShadowSize} only move the corners and
+     * scale them. The max shadow size, and so the padding, doesn't change.
+     */
+    void beginShadowAnimation(float fromShadowSize, float toShadowSize) {
+        syncState();
+        float shadowSize = mGeometry.computeAnimatedShadowSize(Math.max(fromShadowSize, toShadowSize));
+        if (!mShadowAnimating || shadowSize > mAnimationShadowSize) {
+            mAnimationShadowSize = shadowSize;
+            mShadowDirty = true;
+        }
+        mShadowAnimating = true;
+        setAnimatedShadowSize(fromShadowSize);
+    }
+
+    /**
+     * Sets the shadow size of a frame, unrounded so the animation doesn't move in steps.
+     */
+    void setAnimatedShadowSize(float shadowSize) {
+        if (mGeometry.setAnimatedShadowSize(shadowSize)) {
+            mDirty = true;
+            invalidateSelf();
+        }
     }
 
-    Float getShadowSize() {
-        return mRawShadowSize;
+    /**
+     * Keeps the last animated shadow size, rounded like any other shadow size, and rebuilds the
+     * shaders for it.
+     */
+    void endShadowAnimation() {
+        if (!mShadowAnimating) {
+            return;
+        }
+        mShadowAnimating = false;
+        mGeometry.setShadowSize(mGeometry.getRawShadowSize(), mGeometry.getRawMaxShadowSize());
+        saveShadowSize();
+        mDirty = true;
+        mShadowDirty = true;
+        invalidateSelf();
     }
 
-    Float getMaxShadowSize() {
-        return mRawMaxShadowSize;
+    private void saveShadowSize() {
+        mState.mShadowSize = mGeometry.getRawShadowSize();
+        mState.mMaxShadowSize = mGeometry.getRawMaxShadowSize();
+        onStateChanged();
     }
 
-    Float getMinWidth() {
-        float content = 2 * Math.max(mRawMaxShadowSize, mCornerRadius + mInsetShadow + mRawMaxShadowSize / 2);
-        return content + (mRawMaxShadowSize + mInsetShadow) * 2;
+    float getMinWidth() {
+        syncState();
+        return mGeometry.getMinWidth();
     }
 
-    Float getMinHeight() {
-        float content = 2 * Math.max(mRawMaxShadowSize, mCornerRadius + mInsetShadow
-                + mRawMaxShadowSize * SHADOW_MULTIPLIER / 2);
-        return content + (mRawMaxShadowSize * SHADOW_MULTIPLIER + mInsetShadow) * 2;
+    float getMinHeight() {
+        syncState();
+        return mGeometry.getMinHeight();
     }
 
     void setColor(ColorStateList color) {
@@ -496,39 +1038,175 @@ public class SRoundRectDrawableWithShadow extends Drawable {
     }
 
     ColorStateList getColor() {
-        return mBackground;
+        return mState.mBackground;
     }
 
     RectF getCardRectSize() {
         return mCardBounds;
     }
 
-    Pair<Float, Float> getMoveDistance() {
-        if (mTranslatePos != null) {
-            float x = mTranslatePos.first.first + mTranslatePos.second.first;
-            float y = mTranslatePos.first.second + mTranslatePos.second.second;
-            return new Pair(x, y);
-        } else {
-            return null;
-        }
+    float getMoveX() {
+        syncState();
+        return mGeometry.getMoveX();
+    }
+
+    float getMoveY() {
+        syncState();
+        return mGeometry.getMoveY();
     }
 
     void setShadowColor(int startColor, int endColor) {
-        mShadowStartColor = startColor;
-        mShadowEndColor = endColor;
+        mState.mShadowStartColor = startColor;
+        mState.mShadowEndColor = endColor;
+        setUseShadowPalette(false);
+        onStateChanged();
+        mDirty = true;
+        mShadowDirty = true;
         invalidateSelf();
     }
 
     void setColors(int backgroundColor, int shadowStartColor, int shadowEndColor) {
-        mBackground = ColorStateList.valueOf(backgroundColor);
-        mPaint.setColor(mBackground.getColorForState(getState(), mBackground.getDefaultColor()));
-        mShadowStartColor = shadowStartColor;
-        mShadowEndColor = shadowEndColor;
+        mState.mBackground = ColorStateList.valueOf(backgroundColor);
+        mColorTransitionStart = -1L;
+        mPaint.setColor(mState.mBackground.getColorForState(getState(), mState.mBackground.getDefaultColor()));
+        mState.mShadowStartColor = shadowStartColor;
+        mState.mShadowEndColor = shadowEndColor;
+        setUseShadowPalette(false);
+        onStateChanged();
+        mDirty = true;
+        mShadowDirty = true;
+        invalidateSelf();
+    }
+
+    /**
+     * Sets whether the shadow colors come from {@link ShadowPalette}, while it has colors. Giving
+     * the card its own shadow colors turns it off.
+     */
+    public void setUseShadowPalette(boolean usePalette) {
+        if (mState.mUsePalette == usePalette) {
+            return;
+        }
+        mState.mUsePalette = usePalette;
+        onStateChanged();
+        if (usePalette) {
+            ShadowPalette.register(this);
+        } else {
+            ShadowPalette.unregister(this);
+        }
+        onPaletteChanged();
+    }
+
+    public boolean getUseShadowPalette() {
+        return mState.mUsePalette;
+    }
+
+    /**
+     * Called by {@link ShadowPalette} for the cards following it, the shaders are picked up again
+     * on the next draw.
+     */
+    void onPaletteChanged() {
+        mDirty = true;
+        mShadowDirty = true;
         invalidateSelf();
     }
 
+    /**
+     * Configuration of a card drawable. Colors are stored resolved, so new drawables don't need
+     * the resources, and the components last drawn are kept so new drawables start with them.
+     */
+    static final class ShadowState extends ConstantState {
+        int mChangingConfigurations;
+        int mInsetShadow;
+        int mLightDirection = DIRECTION_TOP;
+        // overrides mLightDirection unless NaN
+        float mLightAngle = Float.NaN;
+        float mLightOffset = -1f;
+        int mCornerMask = CornerVisibility.CORNER_ALL;
+        // LT, RT, RB, LB
+        final float[] mCornerRadii = new float[CORNER_COUNT];
+        float mShadowSize;
+        float mMaxShadowSize;
+        boolean mAddPaddingForCorners = true;
+        int mShadowStartColor;
+        int mShadowEndColor;
+        boolean mUsePalette;
+        ColorStateList mBackground;
+        int mShadowRenderMode = RENDER_MODE_VECTOR;
+        boolean mReduceOverdraw;
+        long mColorTransitionDuration;
+        boolean mUseRenderNode = true;
+        /*
+         * This factory is set by CardView implementations.
+         * <p>
+         * Prior to API 17, canvas.drawRoundRect is expensive; which is why we need this interface
+         * to draw efficient rounded rectangles before 17. Only the stateless factory is shared,
+         * each drawable creates its own helper since the helpers keep scratch objects.
+         * */
+        RoundRectHelper.Factory mRoundRectHelperFactory;
+        // immutable, safe to share between every drawable using this state. Volatile since the
+        // drawables of a state may be created and drawn on different threads
+        volatile ShadowCache.Entry[] mComponents;
+        // bumped by every change a drawable makes to this state, so the other drawables sharing
+        // it know they have to apply it again
+        volatile int mGeneration;
+
+        ShadowState() {
+        }
+
+        ShadowState(ShadowState orig) {
+            mChangingConfigurations = orig.mChangingConfigurations;
+            mInsetShadow = orig.mInsetShadow;
+            mLightDirection = orig.mLightDirection;
+            mLightAngle = orig.mLightAngle;
+            mLightOffset = orig.mLightOffset;
+            mCornerMask = orig.mCornerMask;
+            System.arraycopy(orig.mCornerRadii, 0, mCornerRadii, 0, CORNER_COUNT);
+            mShadowSize = orig.mShadowSize;
+            mMaxShadowSize = orig.mMaxShadowSize;
+            mAddPaddingForCorners = orig.mAddPaddingForCorners;
+            mShadowStartColor = orig.mShadowStartColor;
+            mShadowEndColor = orig.mShadowEndColor;
+            mUsePalette = orig.mUsePalette;
+            mBackground = orig.mBackground;
+            mShadowRenderMode = orig.mShadowRenderMode;
+            mReduceOverdraw = orig.mReduceOverdraw;
+            mColorTransitionDuration = orig.mColorTransitionDuration;
+            mUseRenderNode = orig.mUseRenderNode;
+            mRoundRectHelperFactory = orig.mRoundRectHelperFactory;
+            mComponents = orig.mComponents;
+            mGeneration = orig.mGeneration;
+        }
+
+        @NonNull
+        @Override
+        public Drawable newDrawable() {
+            return new SRoundRectDrawableWithShadow(this);
+        }
+
+        @NonNull
+        @Override
+        public Drawable newDrawable(Resources res) {
+            return new SRoundRectDrawableWithShadow(this);
+        }
+
+        @Override
+        public int getChangingConfigurations() {
+            return mChangingConfigurations;
+        }
+    }
+
     interface RoundRectHelper {
-        void drawRoundRect(Canvas canvas, RectF bounds, Float cornerRadius, int cornerVisibility, Paint paint);
+        /**
+         * @param cornerRadii radius of each corner in the order LT, RT, RB, LB, 0 for square ones
+         */
+        void drawRoundRect(Canvas canvas, RectF bounds, float[] cornerRadii, Paint paint);
+
+        /**
+         * Creates the helper of each drawable sharing a constant state, must keep no state itself.
+         */
+        interface Factory {
+            RoundRectHelper create();
+        }
     }
 
 }
@@ -0,0 +1,171 @@
+package com.xylitol.shadcardview;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * declaration: process wide cache of the pre-rasterized shadows used by
+ * {@link SRoundRectDrawableWithShadow#RENDER_MODE_BITMAP}. Each bitmap holds the four shadow
+ * corners around a 1px stretchable edge and is shared by every drawable with the same corner
+ * radius, shadow size and shadow colors. The total size is kept under a byte budget, least
+ * recently used bitmaps are dropped first.
+ * time:
+ */
+public final class ShadowBitmapCache {
+
+    public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+
+    private static final Object sLock = new Object();
+
+    private static int sMaxBytes = DEFAULT_MAX_BYTES;
+    private static int sSizeBytes = 0;
+    private static long sEvictionCount = 0;
+
+    private static final LinkedHashMap<ShadowCache.Key, Bitmap> sBitmaps =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    private ShadowBitmapCache() {
+    }
+
+    /**
+     * Returns the shadow bitmap of the given parameters, rasterizing it on a miss. The corners are
+     * (cornerRadius + shadowSize) pixels square and the stretchable edge is the single row and
+     * column right after them.
+     */
+    static Bitmap obtain(float cornerRadius, float shadowSize, int startColor, int endColor) {
+        ShadowCache.Key key = new ShadowCache.Key(cornerRadius, shadowSize, startColor, endColor);
+        synchronized (sLock) {
+            Bitmap bitmap = sBitmaps.get(key);
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+        Bitmap bitmap = rasterize(ShadowCache.obtain(cornerRadius, shadowSize, startColor, endColor),
+                cornerRadius, shadowSize);
+        synchronized (sLock) {
+            int byteCount = bitmap.getByteCount();
+            if (byteCount <= sMaxBytes) {
+                Bitmap previous = sBitmaps.put(key, bitmap);
+                if (previous != null) {
+                    sSizeBytes -= previous.getByteCount();
+                }
+                sSizeBytes += byteCount;
+                trimToSize(sMaxBytes);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Sets the memory budget of the cached bitmaps in bytes, 0 disables caching. Shrinking the
+     * budget evicts the least recently used bitmaps right away.
+     */
+    public static void setMaxBytes(int maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Invalid max bytes " + maxBytes + ". Must be >= 0");
+        }
+        synchronized (sLock) {
+            sMaxBytes = maxBytes;
+            trimToSize(maxBytes);
+        }
+    }
+
+    public static int getMaxBytes() {
+        synchronized (sLock) {
+            return sMaxBytes;
+        }
+    }
+
+    public static int getSizeBytes() {
+        synchronized (sLock) {
+            return sSizeBytes;
+        }
+    }
+
+    /**
+     * Returns how many bitmaps were dropped to respect the budget or to free memory.
+     */
+    public static long getEvictionCount() {
+        synchronized (sLock) {
+            return sEvictionCount;
+        }
+    }
+
+    /**
+     * Drops every cached bitmap and resets the eviction count. Bitmaps are not recycled since live
+     * drawables may still draw them.
+     */
+    public static void clear() {
+        synchronized (sLock) {
+            sBitmaps.clear();
+            sSizeBytes = 0;
+            sEvictionCount = 0;
+        }
+    }
+
+    /**
+     * Called by {@link ShadowCache#trimMemory(int)}, which decides how much a level frees.
+     */
+    static void trimMemory(int level) {
+        synchronized (sLock) {
+            trimToSize(ShadowCache.trimmedLimit(sSizeBytes, level));
+        }
+    }
+
+    private static void trimToSize(int maxBytes) {
+        Iterator<Map.Entry<ShadowCache.Key, Bitmap>> it = sBitmaps.entrySet().iterator();
+        while (sSizeBytes > maxBytes && it.hasNext()) {
+            sSizeBytes -= it.next().getValue().getByteCount();
+            it.remove();
+            sEvictionCount++;
+        }
+    }
+
+    private static Bitmap rasterize(ShadowCache.Entry components, float cornerRadius, float shadowSize) {
+        int corner = (int) Math.ceil(cornerRadius + shadowSize);
+        int size = 2 * corner + 1;
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        Paint cornerPaint = new Paint(Paint.ANTI_ALIAS_FLAG | Paint.DITHER_FLAG);
+        cornerPaint.setStyle(Paint.Style.FILL);
+        cornerPaint.setShader(components.cornerShader);
+        Paint edgePaint = new Paint(Paint.DITHER_FLAG);
+        edgePaint.setStyle(Paint.Style.FILL);
+        edgePaint.setShader(components.edgeShader);
+        float edgeTop = -cornerRadius - shadowSize;
+
+        // same corner and edge sequence as the vector shadow, on a card whose edges are 1px long
+        int saved = canvas.save();
+        canvas.translate(corner, corner);
+        canvas.drawPath(components.cornerShadowPath, cornerPaint);
+        canvas.drawRect(0f, edgeTop, 1f, -cornerRadius, edgePaint);
+        canvas.restoreToCount(saved);
+
+        saved = canvas.save();
+        canvas.translate(corner + 1, corner);
+        canvas.rotate(90f);
+        canvas.drawPath(components.cornerShadowPath, cornerPaint);
+        canvas.drawRect(0f, edgeTop, 1f, -cornerRadius, edgePaint);
+        canvas.restoreToCount(saved);
+
+        saved = canvas.save();
+        canvas.translate(corner + 1, corner + 1);
+        canvas.rotate(180f);
+        canvas.drawPath(components.cornerShadowPath, cornerPaint);
+        canvas.drawRect(0f, edgeTop, 1f, -cornerRadius, edgePaint);
+        canvas.restoreToCount(saved);
+
+        saved = canvas.save();
+        canvas.translate(corner, corner + 1);
+        canvas.rotate(270f);
+        canvas.drawPath(components.cornerShadowPath, cornerPaint);
+        canvas.drawRect(0f, edgeTop, 1f, -cornerRadius, edgePaint);
+        canvas.restoreToCount(saved);
+        return bitmap;
+    }
+}
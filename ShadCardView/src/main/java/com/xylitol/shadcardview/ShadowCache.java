@@ -0,0 +1,354 @@
+package com.xylitol.shadcardview;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.LinearGradient;
+import android.graphics.Path;
+import android.graphics.RadialGradient;
+import android.graphics.RectF;
+import android.graphics.Shader;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * declaration: process wide cache of the shadow corner paths and shaders, shared by every
+ * {@link SRoundRectDrawableWithShadow} corner with the same radius, shadow size and shadow
+ * colors. Square corners simply use the entry of radius 0. Least recently used entries are
+ * dropped once the cache holds more entries or more bytes than allowed, an entry weighing with the
+ * area of its corner. {@link #trimMemory(int)} also shrinks {@link ShadowBitmapCache},
+ * {@link #registerComponentCallbacks(Context)} hooks it to the system memory callbacks.
+ * time:
+ */
+public final class ShadowCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 32;
+    public static final int DEFAULT_MAX_BYTES = 256 * 1024;
+
+    // rough footprints the platform doesn't report: the path object itself, and the gradient
+    // texture the renderer keeps for each shader, 256 ARGB texels whatever the size
+    static final int ESTIMATED_PATH_BYTES = 256;
+    static final int ESTIMATED_SHADER_BYTES = 256 * 4;
+
+    private static final Object sLock = new Object();
+
+    private static int sMaxEntries = DEFAULT_MAX_ENTRIES;
+    private static int sMaxBytes = DEFAULT_MAX_BYTES;
+    private static int sSizeBytes = 0;
+    private static long sHitCount = 0;
+    private static long sMissCount = 0;
+    private static long sEvictionCount = 0;
+
+    private static final LinkedHashMap<Key, Entry> sEntries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private static ComponentCallbacks2 sComponentCallbacks;
+
+    private ShadowCache() {
+    }
+
+    /**
+     * Returns the components for the given shadow parameters, building them on a miss.
+     */
+    static Entry obtain(float cornerRadius, float shadowSize, int startColor, int endColor) {
+        return obtain(cornerRadius, shadowSize, startColor, endColor, null);
+    }
+
+    /**
+     * Same as above, also counting the lookup into the given card metrics when not null.
+     */
+    static Entry obtain(float cornerRadius, float shadowSize, int startColor, int endColor,
+                        ShadowMetrics.CardMetrics metrics) {
+        Key key = new Key(cornerRadius, shadowSize, startColor, endColor);
+        Entry cached;
+        synchronized (sLock) {
+            cached = sEntries.get(key);
+            if (cached != null) {
+                sHitCount++;
+            } else {
+                sMissCount++;
+            }
+        }
+        // listeners run outside the lock, a slow one mustn't block the other threads
+        if (metrics != null) {
+            ShadowMetrics.recordCacheLookup(metrics, cached != null);
+        }
+        if (cached != null) {
+            return cached;
+        }
+        // build outside of the lock, two threads racing on the same key just build it twice
+        Entry entry = new Entry(key);
+        synchronized (sLock) {
+            if (sMaxEntries > 0 && entry.byteCount <= sMaxBytes) {
+                Entry previous = sEntries.put(key, entry);
+                if (previous != null) {
+                    sSizeBytes -= previous.byteCount;
+                }
+                sSizeBytes += entry.byteCount;
+                trimToSize(sMaxEntries, sMaxBytes);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Sets the maximum number of entries kept, 0 disables caching. Shrinking the cache evicts the
+     * least recently used entries right away.
+     */
+    public static void setMaxEntries(int maxEntries) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Invalid max entries " + maxEntries + ". Must be >= 0");
+        }
+        synchronized (sLock) {
+            sMaxEntries = maxEntries;
+            trimToSize(maxEntries, sMaxBytes);
+        }
+    }
+
+    /**
+     * Sets the estimated memory budget of the cached paths and shaders in bytes, 0 disables
+     * caching. Shrinking the budget evicts the least recently used entries right away.
+     */
+    public static void setMaxBytes(int maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Invalid max bytes " + maxBytes + ". Must be >= 0");
+        }
+        synchronized (sLock) {
+            sMaxBytes = maxBytes;
+            trimToSize(sMaxEntries, maxBytes);
+        }
+    }
+
+    public static int getMaxBytes() {
+        synchronized (sLock) {
+            return sMaxBytes;
+        }
+    }
+
+    /**
+     * Returns the estimated size of the cached entries in bytes.
+     */
+    public static int getSizeBytes() {
+        synchronized (sLock) {
+            return sSizeBytes;
+        }
+    }
+
+    /**
+     * Returns how many entries were dropped to respect the limits or to free memory.
+     */
+    public static long getEvictionCount() {
+        synchronized (sLock) {
+            return sEvictionCount;
+        }
+    }
+
+    public static int getMaxEntries() {
+        synchronized (sLock) {
+            return sMaxEntries;
+        }
+    }
+
+    public static int size() {
+        synchronized (sLock) {
+            return sEntries.size();
+        }
+    }
+
+    public static long getHitCount() {
+        synchronized (sLock) {
+            return sHitCount;
+        }
+    }
+
+    public static long getMissCount() {
+        synchronized (sLock) {
+            return sMissCount;
+        }
+    }
+
+    /**
+     * Drops every cached entry and resets the hit, miss and eviction counts. Drawables keep the
+     * components they already borrowed.
+     */
+    public static void clear() {
+        synchronized (sLock) {
+            sEntries.clear();
+            sSizeBytes = 0;
+            sHitCount = 0;
+            sMissCount = 0;
+            sEvictionCount = 0;
+        }
+    }
+
+    /**
+     * Frees cached shadows, here and in {@link ShadowBitmapCache}, according to a
+     * {@link ComponentCallbacks2} trim level: everything once the app is in the background or
+     * memory is critical, the least recently used half when the UI is hidden or memory runs low.
+     * The budgets are kept, the caches fill up again as cards are drawn.
+     */
+    public static void trimMemory(int level) {
+        synchronized (sLock) {
+            trimToSize(trimmedLimit(sEntries.size(), level), trimmedLimit(sSizeBytes, level));
+        }
+        ShadowBitmapCache.trimMemory(level);
+    }
+
+    /**
+     * Lets the system memory callbacks of the application trim the shadow caches. Calling it again
+     * does nothing.
+     */
+    public static void registerComponentCallbacks(Context context) {
+        ComponentCallbacks2 callbacks;
+        synchronized (sLock) {
+            if (sComponentCallbacks != null) {
+                return;
+            }
+            callbacks = new ComponentCallbacks2() {
+                @Override
+                public void onTrimMemory(int level) {
+                    trimMemory(level);
+                }
+
+                @Override
+                public void onConfigurationChanged(Configuration newConfig) {
+                }
+
+                @Override
+                public void onLowMemory() {
+                    trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+                }
+            };
+            sComponentCallbacks = callbacks;
+        }
+        context.getApplicationContext().registerComponentCallbacks(callbacks);
+    }
+
+    /**
+     * Returns what is left of a cache size after trimming at the given level.
+     */
+    static int trimmedLimit(int size, int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 0;
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return size / 2;
+        }
+        return size;
+    }
+
+    private static void trimToSize(int maxEntries, int maxBytes) {
+        Iterator<Entry> it = sEntries.values().iterator();
+        while ((sEntries.size() > maxEntries || sSizeBytes > maxBytes) && it.hasNext()) {
+            sSizeBytes -= it.next().byteCount;
+            it.remove();
+            sEvictionCount++;
+        }
+    }
+
+    static final class Key {
+        final float cornerRadius;
+        final float shadowSize;
+        final int startColor;
+        final int endColor;
+
+        Key(float cornerRadius, float shadowSize, int startColor, int endColor) {
+            this.cornerRadius = cornerRadius;
+            this.shadowSize = shadowSize;
+            this.startColor = startColor;
+            this.endColor = endColor;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Float.compare(key.cornerRadius, cornerRadius) == 0
+                    && Float.compare(key.shadowSize, shadowSize) == 0
+                    && startColor == key.startColor
+                    && endColor == key.endColor;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Float.floatToIntBits(cornerRadius);
+            result = 31 * result + Float.floatToIntBits(shadowSize);
+            result = 31 * result + startColor;
+            result = 31 * result + endColor;
+            return result;
+        }
+
+        boolean matches(float cornerRadius, float shadowSize, int startColor, int endColor) {
+            return Float.compare(this.cornerRadius, cornerRadius) == 0
+                    && Float.compare(this.shadowSize, shadowSize) == 0
+                    && this.startColor == startColor
+                    && this.endColor == endColor;
+        }
+    }
+
+    /**
+     * Immutable corner path and shaders, in the coordinates of a corner centered on the origin.
+     */
+    static final class Entry {
+        final Key key;
+        final Path cornerShadowPath;
+        final Shader cornerShader;
+        final Shader edgeShader;
+        final int byteCount;
+
+        Entry(Key key) {
+            this.key = key;
+            byteCount = estimateByteCount(key.cornerRadius, key.shadowSize);
+            cornerShadowPath = buildCornerPath(key.cornerRadius, key.shadowSize);
+            cornerShader = buildCornerShader(key.cornerRadius, key.shadowSize, key.startColor, key.endColor);
+            edgeShader = buildEdgeShader(key.cornerRadius, key.shadowSize, key.startColor, key.endColor);
+        }
+    }
+
+    /**
+     * Estimates what an entry keeps alive: its path, the alpha mask a corner of that size is
+     * rasterized into, one byte per pixel, and the textures of its two gradients.
+     */
+    static int estimateByteCount(float cornerRadius, float shadowSize) {
+        int cornerSize = (int) Math.ceil(cornerRadius + shadowSize);
+        return ESTIMATED_PATH_BYTES + cornerSize * cornerSize + 2 * ESTIMATED_SHADER_BYTES;
+    }
+
+    private static Path buildCornerPath(float cornerRadius, float shadowSize) {
+        RectF innerBounds = new RectF(-cornerRadius, -cornerRadius, cornerRadius, cornerRadius);
+        RectF outerBounds = new RectF(innerBounds);
+        outerBounds.inset(-shadowSize, -shadowSize);
+
+        Path cornerShadowPath = new Path();
+        cornerShadowPath.setFillType(Path.FillType.EVEN_ODD);
+        cornerShadowPath.moveTo(-cornerRadius, 0f);
+        cornerShadowPath.rLineTo(-shadowSize, 0f);
+        // outer arc
+        cornerShadowPath.arcTo(outerBounds, 180f, 90f, false);
+        // inner arc
+        cornerShadowPath.arcTo(innerBounds, 270f, -90f, false);
+        cornerShadowPath.close();
+        return cornerShadowPath;
+    }
+
+    private static Shader buildCornerShader(float cornerRadius, float shadowSize, int startColor, int endColor) {
+        float startRatio = cornerRadius / (cornerRadius + shadowSize);
+        return new RadialGradient(0f, 0f, cornerRadius + shadowSize,
+                new int[]{startColor, startColor, endColor},
+                new float[]{0f, startRatio, 1f},
+                Shader.TileMode.CLAMP);
+    }
+
+    private static Shader buildEdgeShader(float cornerRadius, float shadowSize, int startColor, int endColor) {
+        // we offset the content shadowSize/2 pixels up to make it more realistic.
+        // this is why edge shadow shader has some extra space
+        // When drawing bottom edge shadow, we use that extra space.
+        return new LinearGradient(0f, -cornerRadius + shadowSize, 0f,
+                -cornerRadius - shadowSize,
+                new int[]{startColor, startColor, endColor},
+                new float[]{0f, .5f, 1f}, Shader.TileMode.CLAMP);
+    }
+}
@@ -6,13 +6,13 @@ package com.xylitol.shadcardview;
  */
 public class ShadowDirection {
 
-    public static int DIRECTION_LEFT = 1;
-    public static int DIRECTION_RIGHT = 2;
-    public static int DIRECTION_TOP = 3;
-    public static int DIRECTION_BOTTOM = 4;
-    public static int DIRECTION_LT = 5;
-    public static int DIRECTION_RT = 6;
-    public static int DIRECTION_LB = 7;
-    public static int DIRECTION_RB = 8;
-    public static int DIRECTION_NONE = 9;
+    public static final int DIRECTION_LEFT = 1;
+    public static final int DIRECTION_RIGHT = 2;
+    public static final int DIRECTION_TOP = 3;
+    public static final int DIRECTION_BOTTOM = 4;
+    public static final int DIRECTION_LT = 5;
+    public static final int DIRECTION_RT = 6;
+    public static final int DIRECTION_LB = 7;
+    public static final int DIRECTION_RB = 8;
+    public static final int DIRECTION_NONE = 9;
 }
@@ -0,0 +1,516 @@
+package com.xylitol.shadcardview;
+
+import static com.xylitol.shadcardview.CornerVisibility.CORNER_ALL;
+import static com.xylitol.shadcardview.CornerVisibility.CORNER_BOTTOM_LEFT;
+import static com.xylitol.shadcardview.CornerVisibility.CORNER_BOTTOM_RIGHT;
+import static com.xylitol.shadcardview.CornerVisibility.CORNER_TOP_LEFT;
+import static com.xylitol.shadcardview.CornerVisibility.CORNER_TOP_RIGHT;
+import static com.xylitol.shadcardview.ShadowDirection.DIRECTION_BOTTOM;
+import static com.xylitol.shadcardview.ShadowDirection.DIRECTION_LB;
+import static com.xylitol.shadcardview.ShadowDirection.DIRECTION_LEFT;
+import static com.xylitol.shadcardview.ShadowDirection.DIRECTION_LT;
+import static com.xylitol.shadcardview.ShadowDirection.DIRECTION_NONE;
+import static com.xylitol.shadcardview.ShadowDirection.DIRECTION_RB;
+import static com.xylitol.shadcardview.ShadowDirection.DIRECTION_RIGHT;
+import static com.xylitol.shadcardview.ShadowDirection.DIRECTION_RT;
+import static com.xylitol.shadcardview.ShadowDirection.DIRECTION_TOP;
+
+/**
+ * declaration: shadow geometry of a card, free of any android type so it can be computed, cached
+ * and benchmarked on a plain JVM. For a card configuration and bounds it emits a draw list, a
+ * float array that {@link SRoundRectDrawableWithShadow} replays onto the canvas.
+ * <p>
+ * Draw list layout: the shadow and card offsets, the card bounds, then one record per corner in
+ * drawing order LT, RB, LB, RT. A corner record is the translation and rotation to apply, the
+ * radius of the corner, 0 when the corner mask squares it off, and the edge rect drawn after the
+ * corner path, running to the next corner clockwise.
+ * time:
+ */
+final class ShadowGeometry {
+
+    static final float SHADOW_MULTIPLIER = 1.5f;
+
+    // used to calculate content padding
+    private static final double COS_45 = Math.cos(Math.toRadians(45.0));
+
+    static final int DL_SHADOW_DX = 0;
+    static final int DL_SHADOW_DY = 1;
+    static final int DL_CARD_DX = 2;
+    static final int DL_CARD_DY = 3;
+    static final int DL_CARD_LEFT = 4;
+    static final int DL_CARD_TOP = 5;
+    static final int DL_CARD_RIGHT = 6;
+    static final int DL_CARD_BOTTOM = 7;
+    static final int DL_CORNERS = 8;
+
+    static final int CORNER_TX = 0;
+    static final int CORNER_TY = 1;
+    static final int CORNER_ROTATION = 2;
+    static final int CORNER_RADIUS = 3;
+    static final int CORNER_EDGE_TOP = 4;
+    static final int CORNER_EDGE_RIGHT = 5;
+    static final int CORNER_EDGE_BOTTOM = 6;
+    static final int CORNER_HAS_EDGE = 7;
+    static final int CORNER_STRIDE = 8;
+    static final int CORNER_COUNT = 4;
+
+    static final int DL_SIZE = DL_CORNERS + CORNER_COUNT * CORNER_STRIDE;
+
+    // the nine slices of a bitmap shadow without its center, 4 floats each
+    static final int SLICE_COUNT = 8;
+
+    private final float[] mDrawList = new float[DL_SIZE];
+
+    // radius index of each corner, in the order of setCornerRadii
+    static final int RADIUS_LT = 0;
+    static final int RADIUS_RT = 1;
+    static final int RADIUS_RB = 2;
+    static final int RADIUS_LB = 3;
+
+    private final int mInsetShadow; // extra shadow to avoid gaps between card and shadow
+    // the light, resolved once into offsets per unit of move distance
+    private float mShadowDyFactor;
+    private float mCardDxFactor;
+    private float mCardDyFactor;
+    // distance between card and shadow, negative to follow half the shadow size
+    private float mLightOffset = -1f;
+    private int mCornerMask;
+
+    // radii set by the developer, rounded, and the largest of them
+    private final float[] mCornerRadii = new float[CORNER_COUNT];
+    private float mCornerRadius = 0f;
+    // actual value set by developer
+    private float mRawMaxShadowSize = 0f;
+    // multiplied value to account for shadow offset
+    private float mShadowSize = 0f;
+    // actual value set by developer
+    private float mRawShadowSize = 0f;
+    private boolean mAddPaddingForCorners = true;
+
+    // radius of each corner after applying mCornerMask, 0 for square corners
+    private final float[] mResolvedRadii = new float[CORNER_COUNT];
+    // whether every corner is drawn with mCornerRadius
+    private boolean mUniform = true;
+
+    /**
+     * @param cornerMask visible corners, see {@link CornerVisibility#toMask}
+     */
+    ShadowGeometry(int insetShadow, int lightDirection, int cornerMask) {
+        mInsetShadow = insetShadow;
+        setLightDirection(lightDirection);
+        mCornerMask = cornerMask;
+        resolveCornerRadii();
+    }
+
+    /**
+     * Casts the value to an even integer.
+     */
+    private static int toEven(float value) {
+        int i = (int) (value + 0.5f);
+        return i % 2 == 1 ? i - 1 : i;
+    }
+
+    /**
+     * Rounds the radius to the nearest integer, the constructor and setCornerRadius of the drawable
+     * must agree so that setting the same radius again is detected as a no-op.
+     */
+    static float roundRadius(float radius) {
+        return (float) ((int) (radius + 0.5f));
+    }
+
+    /**
+     * Gives every corner the same radius.
+     *
+     * @return whether a rounded radius changed
+     */
+    boolean setCornerRadius(float radius) {
+        return setCornerRadii(radius, radius, radius, radius);
+    }
+
+    /**
+     * @return whether a rounded radius changed
+     */
+    boolean setCornerRadii(float topLeft, float topRight, float bottomRight, float bottomLeft) {
+        if (topLeft < 0f || topRight < 0f || bottomRight < 0f || bottomLeft < 0f) {
+            throw new IllegalArgumentException("Invalid radii " + topLeft + ", " + topRight + ", "
+                    + bottomRight + ", " + bottomLeft + ". Must be >= 0");
+        }
+        float lt = roundRadius(topLeft);
+        float rt = roundRadius(topRight);
+        float rb = roundRadius(bottomRight);
+        float lb = roundRadius(bottomLeft);
+        if (mCornerRadii[RADIUS_LT] == lt && mCornerRadii[RADIUS_RT] == rt
+                && mCornerRadii[RADIUS_RB] == rb && mCornerRadii[RADIUS_LB] == lb) {
+            return false;
+        }
+        mCornerRadii[RADIUS_LT] = lt;
+        mCornerRadii[RADIUS_RT] = rt;
+        mCornerRadii[RADIUS_RB] = rb;
+        mCornerRadii[RADIUS_LB] = lb;
+        mCornerRadius = Math.max(Math.max(lt, rt), Math.max(rb, lb));
+        resolveCornerRadii();
+        return true;
+    }
+
+    /**
+     * @return whether the mask changed
+     */
+    boolean setCornerMask(int cornerMask) {
+        if ((cornerMask & ~CORNER_ALL) != 0) {
+            throw new IllegalArgumentException("Invalid corner mask " + cornerMask);
+        }
+        if (mCornerMask == cornerMask) {
+            return false;
+        }
+        mCornerMask = cornerMask;
+        resolveCornerRadii();
+        return true;
+    }
+
+    /**
+     * @return whether the shadow sizes changed after rounding and clamping
+     */
+    boolean setShadowSize(float shadowSize, float maxShadowSize) {
+        if (shadowSize < 0f) {
+            throw new IllegalArgumentException("Invalid shadow size " + shadowSize
+                    + ". Must be >= 0");
+        }
+        if (maxShadowSize < 0f) {
+            throw new IllegalArgumentException("Invalid max shadow size " + maxShadowSize
+                    + ". Must be >= 0");
+        }
+
+        float updateShadowSize = toEven(shadowSize);
+        float updateMaxShadowSize = toEven(maxShadowSize);
+        if (updateShadowSize > updateMaxShadowSize) {
+            updateShadowSize = updateMaxShadowSize;
+        }
+        if (mRawShadowSize == updateShadowSize && mRawMaxShadowSize == updateMaxShadowSize) {
+            return false;
+        }
+        mRawShadowSize = updateShadowSize;
+        mRawMaxShadowSize = updateMaxShadowSize;
+        mShadowSize = multiplyShadowSize(updateShadowSize);
+        calculateShadowDirection();
+        return true;
+    }
+
+    /**
+     * Sets the shadow size of an animation frame. It isn't rounded, so the shadow follows the
+     * elevation smoothly instead of moving by 2px steps, and the max shadow size stays the same.
+     * {@link #setShadowSize} rounds it again once the animation ends.
+     *
+     * @return whether the shadow size changed after clamping
+     */
+    boolean setAnimatedShadowSize(float shadowSize) {
+        if (shadowSize < 0f) {
+            throw new IllegalArgumentException("Invalid shadow size " + shadowSize
+                    + ". Must be >= 0");
+        }
+        float updateShadowSize = Math.min(shadowSize, mRawMaxShadowSize);
+        if (mRawShadowSize == updateShadowSize) {
+            return false;
+        }
+        mRawShadowSize = updateShadowSize;
+        mShadowSize = multiplyShadowSize(updateShadowSize);
+        calculateShadowDirection();
+        return true;
+    }
+
+    /**
+     * Returns the drawn shadow size of an animation frame at the given elevation, clamped like
+     * {@link #setAnimatedShadowSize} would, without changing the geometry.
+     */
+    float computeAnimatedShadowSize(float shadowSize) {
+        return multiplyShadowSize(Math.min(shadowSize, mRawMaxShadowSize));
+    }
+
+    private float multiplyShadowSize(float rawShadowSize) {
+        return rawShadowSize * SHADOW_MULTIPLIER + mInsetShadow + .5f;
+    }
+
+    /**
+     * @return whether the value changed
+     */
+    boolean setAddPaddingForCorners(boolean addPaddingForCorners) {
+        if (mAddPaddingForCorners == addPaddingForCorners) {
+            return false;
+        }
+        mAddPaddingForCorners = addPaddingForCorners;
+        return true;
+    }
+
+    /**
+     * Sets the light to one of the {@link ShadowDirection} constants. Diagonal lights keep their
+     * original look, the shadow drops below the card and the card moves sideways.
+     *
+     * @return whether the light changed
+     */
+    boolean setLightDirection(int lightDirection) {
+        if (lightDirection == DIRECTION_NONE) {
+            return setLightFactors(0f, 0f, 0f);
+        } else if (lightDirection == DIRECTION_LEFT) {
+            return setLightFactors(0f, -1f, 0f);
+        } else if (lightDirection == DIRECTION_RIGHT) {
+            return setLightFactors(0f, 1f, 0f);
+        } else if (lightDirection == DIRECTION_TOP) {
+            return setLightFactors(0f, 0f, -1f);
+        } else if (lightDirection == DIRECTION_BOTTOM) {
+            return setLightFactors(0f, 0f, 1f);
+        } else if (lightDirection == DIRECTION_LT) {
+            return setLightFactors(1f, -1f, -1f);
+        } else if (lightDirection == DIRECTION_RT) {
+            return setLightFactors(1f, 1f, -1f);
+        } else if (lightDirection == DIRECTION_LB) {
+            return setLightFactors(-1f, -1f, 1f);
+        } else if (lightDirection == DIRECTION_RB) {
+            return setLightFactors(-1f, 1f, 1f);
+        }
+        throw new IllegalArgumentException("invalid light direction exception");
+    }
+
+    /**
+     * Sets the light to come from the given angle, in degrees clockwise from the right like
+     * canvas rotations, so 270 is a light above the card. The card moves towards the light and
+     * the shadow stays centered.
+     *
+     * @return whether the light changed
+     */
+    boolean setLightAngle(float degrees) {
+        if (Float.isNaN(degrees) || Float.isInfinite(degrees)) {
+            throw new IllegalArgumentException("Invalid light angle " + degrees);
+        }
+        double radians = Math.toRadians(degrees);
+        return setLightFactors(0f, (float) Math.cos(radians), (float) Math.sin(radians));
+    }
+
+    /**
+     * Sets the distance the card moves towards the light, capped at half the max shadow size so it
+     * stays inside the padding. Negative values follow half the current shadow size.
+     *
+     * @return whether the offset changed
+     */
+    boolean setLightOffset(float offset) {
+        if (offset < 0f) {
+            offset = -1f;
+        }
+        if (mLightOffset == offset) {
+            return false;
+        }
+        mLightOffset = offset;
+        calculateShadowDirection();
+        return true;
+    }
+
+    private boolean setLightFactors(float shadowDy, float cardDx, float cardDy) {
+        if (mShadowDyFactor == shadowDy && mCardDxFactor == cardDx && mCardDyFactor == cardDy) {
+            return false;
+        }
+        mShadowDyFactor = shadowDy;
+        mCardDxFactor = cardDx;
+        mCardDyFactor = cardDy;
+        calculateShadowDirection();
+        return true;
+    }
+
+    /**
+     * Calculates the offsets of the shadow and of the card from the light. The card is drawn
+     * after the shadow, so its offset adds up with the shadow one.
+     */
+    void calculateShadowDirection() {
+        float moveDistance = mLightOffset < 0f ? mRawShadowSize / 2
+                : Math.min(mLightOffset, mRawMaxShadowSize / 2);
+        setOffsets(0f, mShadowDyFactor * moveDistance, mCardDxFactor * moveDistance,
+                mCardDyFactor * moveDistance);
+    }
+
+    private void setOffsets(float shadowDx, float shadowDy, float cardDx, float cardDy) {
+        mDrawList[DL_SHADOW_DX] = shadowDx;
+        mDrawList[DL_SHADOW_DY] = shadowDy;
+        mDrawList[DL_CARD_DX] = cardDx;
+        mDrawList[DL_CARD_DY] = cardDy;
+    }
+
+    /**
+     * Resolves the radius every corner is drawn with, 0 for the corners missing from mCornerMask.
+     */
+    void resolveCornerRadii() {
+        mResolvedRadii[RADIUS_LT] = (mCornerMask & CORNER_TOP_LEFT) != 0 ? mCornerRadii[RADIUS_LT] : 0f;
+        mResolvedRadii[RADIUS_RT] = (mCornerMask & CORNER_TOP_RIGHT) != 0 ? mCornerRadii[RADIUS_RT] : 0f;
+        mResolvedRadii[RADIUS_RB] = (mCornerMask & CORNER_BOTTOM_RIGHT) != 0 ? mCornerRadii[RADIUS_RB] : 0f;
+        mResolvedRadii[RADIUS_LB] = (mCornerMask & CORNER_BOTTOM_LEFT) != 0 ? mCornerRadii[RADIUS_LB] : 0f;
+        mUniform = true;
+        for (int i = 0; i < CORNER_COUNT; i++) {
+            mUniform &= mResolvedRadii[i] == mCornerRadius;
+        }
+    }
+
+    /**
+     * Lays the card and the shadow out in the given bounds and fills the draw list.
+     */
+    void build(float left, float top, float right, float bottom) {
+        // Card is offset SHADOW_MULTIPLIER * maxShadowSize to account for the shadow shift.
+        // We could have different top-bottom offsets to avoid extra gap above but in that case
+        // center aligning Views inside the CardView would be problematic.
+        float verticalOffset = mRawMaxShadowSize * SHADOW_MULTIPLIER;
+        float cardLeft = left + mRawMaxShadowSize;
+        float cardTop = top + verticalOffset;
+        float cardRight = right - mRawMaxShadowSize;
+        float cardBottom = bottom - verticalOffset;
+        mDrawList[DL_CARD_LEFT] = cardLeft;
+        mDrawList[DL_CARD_TOP] = cardTop;
+        mDrawList[DL_CARD_RIGHT] = cardRight;
+        mDrawList[DL_CARD_BOTTOM] = cardBottom;
+        float width = cardRight - cardLeft;
+        float height = cardBottom - cardTop;
+        float lt = mResolvedRadii[RADIUS_LT];
+        float rt = mResolvedRadii[RADIUS_RT];
+        float rb = mResolvedRadii[RADIUS_RB];
+        float lb = mResolvedRadii[RADIUS_LB];
+
+        // each edge runs from the center of its corner to the center of the next one clockwise,
+        // whatever their radii the edge strip stays at the same distance from the card side
+        setCorner(0, cardLeft + inset(lt), cardTop + inset(lt), 0f, lt,
+                width - inset(lt) - inset(rt));
+        setCorner(1, cardRight - inset(rb), cardBottom - inset(rb), 180f, rb,
+                width - inset(rb) - inset(lb));
+        setCorner(2, cardLeft + inset(lb), cardBottom - inset(lb), 270f, lb,
+                height - inset(lb) - inset(lt));
+        setCorner(3, cardRight - inset(rt), cardTop + inset(rt), 90f, rt,
+                height - inset(rt) - inset(rb));
+    }
+
+    private float inset(float cornerRadius) {
+        return cornerRadius + mInsetShadow + mRawShadowSize / 2;
+    }
+
+    private void setCorner(int index, float tx, float ty, float rotation, float cornerRadius,
+                           float edgeRight) {
+        int o = DL_CORNERS + index * CORNER_STRIDE;
+        mDrawList[o + CORNER_TX] = tx;
+        mDrawList[o + CORNER_TY] = ty;
+        mDrawList[o + CORNER_ROTATION] = rotation;
+        mDrawList[o + CORNER_RADIUS] = cornerRadius;
+        mDrawList[o + CORNER_EDGE_TOP] = -cornerRadius - mShadowSize;
+        mDrawList[o + CORNER_EDGE_RIGHT] = edgeRight;
+        mDrawList[o + CORNER_EDGE_BOTTOM] = -cornerRadius;
+        mDrawList[o + CORNER_HAS_EDGE] = edgeRight > 0f ? 1f : 0f;
+    }
+
+    /**
+     * Fills {@code out} with the destination of the 8 slices of a bitmap shadow whose corners are
+     * {@code corner} pixels square, in the order LT, top, RT, left, right, LB, bottom, RB. Only
+     * valid for {@link #isUniform() uniform} cards, after {@link #build}.
+     */
+    void buildSliceDestinations(int corner, float[] out) {
+        float inset = inset(mCornerRadius);
+        float left = mDrawList[DL_CARD_LEFT] + inset;
+        float top = mDrawList[DL_CARD_TOP] + inset;
+        float right = mDrawList[DL_CARD_RIGHT] - inset;
+        float bottom = mDrawList[DL_CARD_BOTTOM] - inset;
+        int i = 0;
+        for (int row = 0; row < 3; row++) {
+            float sliceTop = row == 0 ? top - corner : row == 1 ? top : bottom;
+            float sliceBottom = row == 0 ? top : row == 1 ? bottom : bottom + corner;
+            for (int col = 0; col < 3; col++) {
+                if (row == 1 && col == 1) {
+                    // the center is transparent, the card covers it
+                    continue;
+                }
+                out[i++] = col == 0 ? left - corner : col == 1 ? left : right;
+                out[i++] = sliceTop;
+                out[i++] = col == 0 ? left : col == 1 ? right : right + corner;
+                out[i++] = sliceBottom;
+            }
+        }
+    }
+
+    float[] getDrawList() {
+        return mDrawList;
+    }
+
+    /**
+     * Returns the largest corner radius, the one padding and minimum sizes make room for.
+     */
+    float getCornerRadius() {
+        return mCornerRadius;
+    }
+
+    /**
+     * Returns the radius set for a corner, see {@link #RADIUS_LT}, even if the mask squares it off.
+     */
+    float getCornerRadius(int corner) {
+        return mCornerRadii[corner];
+    }
+
+    /**
+     * Returns the radius each corner is drawn with, in the order LT, RT, RB, LB. Don't modify it.
+     */
+    float[] getResolvedRadii() {
+        return mResolvedRadii;
+    }
+
+    /**
+     * Returns whether every corner is visible and has the same radius.
+     */
+    boolean isUniform() {
+        return mUniform;
+    }
+
+    float getShadowSize() {
+        return mShadowSize;
+    }
+
+    float getRawShadowSize() {
+        return mRawShadowSize;
+    }
+
+    float getRawMaxShadowSize() {
+        return mRawMaxShadowSize;
+    }
+
+    int getCornerMask() {
+        return mCornerMask;
+    }
+
+    float getMoveX() {
+        return mDrawList[DL_SHADOW_DX] + mDrawList[DL_CARD_DX];
+    }
+
+    float getMoveY() {
+        return mDrawList[DL_SHADOW_DY] + mDrawList[DL_CARD_DY];
+    }
+
+    double getVerticalPadding() {
+        return calculateVerticalPadding(mRawMaxShadowSize, mCornerRadius, mAddPaddingForCorners);
+    }
+
+    double getHorizontalPadding() {
+        return calculateHorizontalPadding(mRawMaxShadowSize, mCornerRadius, mAddPaddingForCorners);
+    }
+
+    float getMinWidth() {
+        float content = 2 * Math.max(mRawMaxShadowSize, mCornerRadius + mInsetShadow + mRawMaxShadowSize / 2);
+        return content + (mRawMaxShadowSize + mInsetShadow) * 2;
+    }
+
+    float getMinHeight() {
+        float content = 2 * Math.max(mRawMaxShadowSize, mCornerRadius + mInsetShadow
+                + mRawMaxShadowSize * SHADOW_MULTIPLIER / 2);
+        return content + (mRawMaxShadowSize * SHADOW_MULTIPLIER + mInsetShadow) * 2;
+    }
+
+    static double calculateVerticalPadding(float maxShadowSize, float cornerRadius,
+                                           boolean addPaddingForCorners) {
+        return addPaddingForCorners ?
+                (float) (maxShadowSize * SHADOW_MULTIPLIER + (1 - COS_45) * cornerRadius) :
+                maxShadowSize * SHADOW_MULTIPLIER;
+    }
+
+    static double calculateHorizontalPadding(float maxShadowSize, float cornerRadius,
+                                             boolean addPaddingForCorners) {
+        return addPaddingForCorners ?
+                (float) (maxShadowSize + (1 - COS_45) * cornerRadius) :
+                maxShadowSize;
+    }
+}
@@ -0,0 +1,116 @@
+package com.xylitol.shadcardview;
+
+import java.util.ArrayList;
+import java.util.WeakHashMap;
+
+/**
+ * declaration: a light source shared by every card with cardUseGlobalLight, so the shadows of a
+ * screen all fall away from the same point without configuring each card. The position is in
+ * window coordinates. Each card turns it into a light angle from its own center when it is laid
+ * out or moves on screen, e.g. scrolled, and every attached card is updated when the light moves.
+ * Move the light from the UI thread.
+ * time:
+ */
+public final class ShadowLight {
+
+    /**
+     * Told when the light moved or went away, on the thread that moved it.
+     */
+    interface Observer {
+        void onLightChanged();
+    }
+
+    private static final Object sLock = new Object();
+    // attached cards using the light, weakly so the registry never keeps a card alive
+    private static final WeakHashMap<Observer, Boolean> sObservers = new WeakHashMap<>();
+
+    // x and y, replaced as a whole so cards laid out on any thread never see half a position.
+    // null when there is no light
+    private static volatile float[] sPosition;
+
+    private ShadowLight() {
+    }
+
+    /**
+     * Places the light, in window coordinates.
+     */
+    public static void setPosition(float x, float y) {
+        float[] position = sPosition;
+        if (position != null && position[0] == x && position[1] == y) {
+            return;
+        }
+        sPosition = new float[]{x, y};
+        notifyObservers();
+    }
+
+    /**
+     * Removes the light, cards using it go back to their own light direction or angle.
+     */
+    public static void clear() {
+        if (sPosition == null) {
+            return;
+        }
+        sPosition = null;
+        notifyObservers();
+    }
+
+    public static boolean hasPosition() {
+        return sPosition != null;
+    }
+
+    /**
+     * Copies the position of the light into outPosition, x then y, both taken from the same
+     * {@link #setPosition} call. Leaves it untouched when there is no light.
+     *
+     * @return whether there is a light
+     */
+    public static boolean getPosition(float[] outPosition) {
+        if (outPosition == null || outPosition.length < 2) {
+            throw new IllegalArgumentException("outPosition must hold x and y");
+        }
+        float[] position = sPosition;
+        if (position == null) {
+            return false;
+        }
+        outPosition[0] = position[0];
+        outPosition[1] = position[1];
+        return true;
+    }
+
+    static void addObserver(Observer observer) {
+        synchronized (sLock) {
+            sObservers.put(observer, Boolean.TRUE);
+        }
+    }
+
+    static void removeObserver(Observer observer) {
+        synchronized (sLock) {
+            sObservers.remove(observer);
+        }
+    }
+
+    private static void notifyObservers() {
+        ArrayList<Observer> observers;
+        synchronized (sLock) {
+            // the cards relayout and invalidate, never under the lock
+            observers = new ArrayList<>(sObservers.keySet());
+        }
+        for (int i = 0; i < observers.size(); i++) {
+            observers.get(i).onLightChanged();
+        }
+    }
+
+    /**
+     * Returns the angle the light reaches a point from, in the convention of
+     * {@link SRoundRectDrawableWithShadow#setLightAngle}, or NaN when there is no light or the
+     * point is right below it.
+     */
+    static float angleAt(float x, float y) {
+        // a single read, x and y come from the same position
+        float[] position = sPosition;
+        if (position == null || (x == position[0] && y == position[1])) {
+            return Float.NaN;
+        }
+        return (float) Math.toDegrees(Math.atan2(position[1] - y, position[0] - x));
+    }
+}
@@ -0,0 +1,291 @@
+package com.xylitol.shadcardview;
+
+import android.graphics.drawable.Drawable;
+import android.support.annotation.Nullable;
+import android.view.View;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * declaration: optional counters of the work done by the card shadows, off by default. When
+ * enabled every {@link SRoundRectDrawableWithShadow} counts its component rebuilds, ShadowCache
+ * lookups, draws with their duration and the invalidations requested while one was already
+ * pending. Totals are kept for the whole process and listeners get every event with the counters
+ * of the card it happened to, whose view tells which card is slow or restyles itself on every
+ * bind. While disabled the drawables only read a volatile flag.
+ * time:
+ */
+public final class ShadowMetrics {
+
+    static volatile boolean sEnabled = false;
+
+    private static final AtomicLong sBuildCount = new AtomicLong();
+    private static final AtomicLong sShadowBuildCount = new AtomicLong();
+    private static final AtomicLong sCacheHitCount = new AtomicLong();
+    private static final AtomicLong sCacheMissCount = new AtomicLong();
+    private static final AtomicLong sDrawCount = new AtomicLong();
+    private static final AtomicLong sDrawNanos = new AtomicLong();
+    private static final AtomicLong sRedundantInvalidateCount = new AtomicLong();
+    private static final AtomicLong sShadowRecordingCount = new AtomicLong();
+
+    private static final Object sLock = new Object();
+    // copied on write so events iterate without locking or allocating
+    private static volatile Listener[] sListeners = new Listener[0];
+
+    private ShadowMetrics() {
+    }
+
+    /**
+     * Receives the events of every card while metrics are enabled, on the thread doing the work,
+     * usually the UI thread. Implementations must be cheap.
+     */
+    public interface Listener {
+        /**
+         * @param shadowRebuilt whether the corner paths and shaders were refreshed too, not only
+         *                      the geometry
+         */
+        void onComponentsBuilt(CardMetrics card, boolean shadowRebuilt);
+
+        /**
+         * @param hit whether the corner components were shared with other cards, a miss built them
+         */
+        void onCacheLookup(CardMetrics card, boolean hit);
+
+        void onDraw(CardMetrics card, long drawNanos);
+
+        void onRedundantInvalidate(CardMetrics card);
+
+        /**
+         * The shadow was recorded into its RenderNode again, API 29+ only.
+         */
+        void onShadowRecorded(CardMetrics card);
+    }
+
+    /**
+     * Counters of a single card, read them from the thread drawing the card.
+     */
+    public static final class CardMetrics {
+        // held weakly, listeners keeping the metrics of a card don't keep its view alive
+        private final WeakReference<Drawable> mDrawable;
+        long mBuildCount;
+        long mShadowBuildCount;
+        long mCacheHitCount;
+        long mCacheMissCount;
+        long mDrawCount;
+        long mDrawNanos;
+        long mRedundantInvalidateCount;
+        long mShadowRecordingCount;
+
+        CardMetrics(Drawable drawable) {
+            mDrawable = new WeakReference<>(drawable);
+        }
+
+        /**
+         * Returns the view drawing the card, usually the SCardView, or null while the shadow
+         * drawable isn't set on a view or once the card was garbage collected.
+         */
+        @Nullable
+        public View getCardView() {
+            Drawable drawable = mDrawable.get();
+            Drawable.Callback callback = drawable != null ? drawable.getCallback() : null;
+            return callback instanceof View ? (View) callback : null;
+        }
+
+        /**
+         * Geometry rebuilds, after a bounds, size or shadow change.
+         */
+        public long getBuildCount() {
+            return mBuildCount;
+        }
+
+        /**
+         * Rebuilds that also refreshed the corner paths and shaders.
+         */
+        public long getShadowBuildCount() {
+            return mShadowBuildCount;
+        }
+
+        public long getCacheHitCount() {
+            return mCacheHitCount;
+        }
+
+        public long getCacheMissCount() {
+            return mCacheMissCount;
+        }
+
+        public long getDrawCount() {
+            return mDrawCount;
+        }
+
+        public long getDrawNanos() {
+            return mDrawNanos;
+        }
+
+        /**
+         * Invalidations requested while the previous one hadn't been drawn yet.
+         */
+        public long getRedundantInvalidateCount() {
+            return mRedundantInvalidateCount;
+        }
+
+        /**
+         * Times the shadow was recorded into its RenderNode, API 29+ only. Draws that didn't
+         * record it replayed the previous recording.
+         */
+        public long getShadowRecordingCount() {
+            return mShadowRecordingCount;
+        }
+
+        public void reset() {
+            mBuildCount = 0;
+            mShadowBuildCount = 0;
+            mCacheHitCount = 0;
+            mCacheMissCount = 0;
+            mDrawCount = 0;
+            mDrawNanos = 0;
+            mRedundantInvalidateCount = 0;
+            mShadowRecordingCount = 0;
+        }
+    }
+
+    /**
+     * Turns metrics on or off for every card. Cards start counting from their next event.
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    public static void addListener(Listener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener == null");
+        }
+        synchronized (sLock) {
+            Listener[] listeners = Arrays.copyOf(sListeners, sListeners.length + 1);
+            listeners[listeners.length - 1] = listener;
+            sListeners = listeners;
+        }
+    }
+
+    public static void removeListener(Listener listener) {
+        synchronized (sLock) {
+            Listener[] listeners = sListeners;
+            for (int i = 0; i < listeners.length; i++) {
+                if (listeners[i] == listener) {
+                    Listener[] updated = new Listener[listeners.length - 1];
+                    System.arraycopy(listeners, 0, updated, 0, i);
+                    System.arraycopy(listeners, i + 1, updated, i, listeners.length - i - 1);
+                    sListeners = updated;
+                    return;
+                }
+            }
+        }
+    }
+
+    public static long getBuildCount() {
+        return sBuildCount.get();
+    }
+
+    public static long getShadowBuildCount() {
+        return sShadowBuildCount.get();
+    }
+
+    public static long getCacheHitCount() {
+        return sCacheHitCount.get();
+    }
+
+    public static long getCacheMissCount() {
+        return sCacheMissCount.get();
+    }
+
+    public static long getDrawCount() {
+        return sDrawCount.get();
+    }
+
+    public static long getDrawNanos() {
+        return sDrawNanos.get();
+    }
+
+    public static long getRedundantInvalidateCount() {
+        return sRedundantInvalidateCount.get();
+    }
+
+    public static long getShadowRecordingCount() {
+        return sShadowRecordingCount.get();
+    }
+
+    /**
+     * Resets the process wide totals, per card counters are reset with {@link CardMetrics#reset()}.
+     */
+    public static void reset() {
+        sBuildCount.set(0);
+        sShadowBuildCount.set(0);
+        sCacheHitCount.set(0);
+        sCacheMissCount.set(0);
+        sDrawCount.set(0);
+        sDrawNanos.set(0);
+        sRedundantInvalidateCount.set(0);
+        sShadowRecordingCount.set(0);
+    }
+
+    static void recordBuild(CardMetrics card, boolean shadowRebuilt) {
+        card.mBuildCount++;
+        sBuildCount.incrementAndGet();
+        if (shadowRebuilt) {
+            card.mShadowBuildCount++;
+            sShadowBuildCount.incrementAndGet();
+        }
+        Listener[] listeners = sListeners;
+        for (Listener listener : listeners) {
+            listener.onComponentsBuilt(card, shadowRebuilt);
+        }
+    }
+
+    static void recordCacheLookup(CardMetrics card, boolean hit) {
+        if (hit) {
+            card.mCacheHitCount++;
+            sCacheHitCount.incrementAndGet();
+        } else {
+            card.mCacheMissCount++;
+            sCacheMissCount.incrementAndGet();
+        }
+        Listener[] listeners = sListeners;
+        for (Listener listener : listeners) {
+            listener.onCacheLookup(card, hit);
+        }
+    }
+
+    static void recordDraw(CardMetrics card, long drawNanos) {
+        card.mDrawCount++;
+        card.mDrawNanos += drawNanos;
+        sDrawCount.incrementAndGet();
+        sDrawNanos.addAndGet(drawNanos);
+        Listener[] listeners = sListeners;
+        for (Listener listener : listeners) {
+            listener.onDraw(card, drawNanos);
+        }
+    }
+
+    static void recordRedundantInvalidate(CardMetrics card) {
+        card.mRedundantInvalidateCount++;
+        sRedundantInvalidateCount.incrementAndGet();
+        Listener[] listeners = sListeners;
+        for (Listener listener : listeners) {
+            listener.onRedundantInvalidate(card);
+        }
+    }
+
+    static void recordShadowRecording(CardMetrics card) {
+        card.mShadowRecordingCount++;
+        sShadowRecordingCount.incrementAndGet();
+        Listener[] listeners = sListeners;
+        for (Listener listener : listeners) {
+            listener.onShadowRecorded(card);
+        }
+    }
+}
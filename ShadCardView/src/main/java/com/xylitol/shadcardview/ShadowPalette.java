@@ -0,0 +1,81 @@
+package com.xylitol.shadcardview;
+
+import android.support.annotation.ColorInt;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.WeakHashMap;
+
+/**
+ * declaration: process-wide shadow colors, e.g. one pair for the light theme and one for the dark
+ * theme. Every card that wasn't given its own shadow colors follows the palette, so switching it
+ * restyles all of them at once: each live card is invalidated in a single pass and the first one
+ * drawn builds the shaders, the others find them in {@link ShadowCache}. Cards with explicit
+ * shadow colors, and cards using native shadows, keep their colors. Change it from the UI thread.
+ * time:
+ */
+public final class ShadowPalette {
+
+    private static final Object sLock = new Object();
+    // cards following the palette, weakly so the registry never keeps a card alive
+    private static final WeakHashMap<SRoundRectDrawableWithShadow, Boolean> sDrawables = new WeakHashMap<>();
+    // start and end color, replaced as a whole so readers never see half a palette. null when unset
+    private static volatile int[] sColors;
+
+    private ShadowPalette() {
+    }
+
+    /**
+     * Switches the shadow colors of every card following the palette.
+     */
+    public static void setColors(@ColorInt int startColor, @ColorInt int endColor) {
+        int[] colors = sColors;
+        if (colors != null && colors[0] == startColor && colors[1] == endColor) {
+            return;
+        }
+        sColors = new int[]{startColor, endColor};
+        invalidateAll();
+    }
+
+    /**
+     * Goes back to the default shadow colors of the library.
+     */
+    public static void clear() {
+        if (sColors == null) {
+            return;
+        }
+        sColors = null;
+        invalidateAll();
+    }
+
+    /**
+     * Returns the start and end color, null when no palette is set. Don't modify it.
+     */
+    @Nullable
+    static int[] getColors() {
+        return sColors;
+    }
+
+    static void register(SRoundRectDrawableWithShadow drawable) {
+        synchronized (sLock) {
+            sDrawables.put(drawable, Boolean.TRUE);
+        }
+    }
+
+    static void unregister(SRoundRectDrawableWithShadow drawable) {
+        synchronized (sLock) {
+            sDrawables.remove(drawable);
+        }
+    }
+
+    private static void invalidateAll() {
+        ArrayList<SRoundRectDrawableWithShadow> drawables;
+        synchronized (sLock) {
+            // invalidating may run app code, never under the lock
+            drawables = new ArrayList<>(sDrawables.keySet());
+        }
+        for (int i = 0; i < drawables.size(); i++) {
+            drawables.get(i).onPaletteChanged();
+        }
+    }
+}
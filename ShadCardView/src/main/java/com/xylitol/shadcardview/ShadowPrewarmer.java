@@ -0,0 +1,229 @@
+package com.xylitol.shadcardview;
+
+import static com.xylitol.shadcardview.CornerVisibility.CORNER_ALL;
+import static com.xylitol.shadcardview.CornerVisibility.NONE;
+import static com.xylitol.shadcardview.CornerVisibility.toMask;
+import static com.xylitol.shadcardview.ShadowDirection.DIRECTION_TOP;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.support.annotation.StyleRes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * declaration: builds the shadow paths, shaders and, for {@link SRoundRectDrawableWithShadow#RENDER_MODE_BITMAP},
+ * the rasterized shadows of known card configurations on a background thread, so the first frame
+ * showing such a card finds them in {@link ShadowCache} and {@link ShadowBitmapCache} instead of
+ * building them on the UI thread. Call it at app start or before opening a screen. Prewarmed
+ * entries take their place in the caches like any other, a budget too small for them simply
+ * evicts them again.
+ * time:
+ */
+public final class ShadowPrewarmer {
+
+    private static final Object sLock = new Object();
+    private static ExecutorService sExecutor;
+
+    private ShadowPrewarmer() {
+    }
+
+    /**
+     * Shadow parameters of a card, the same values as the SCardView attributes. Sizes are in
+     * pixels and colors left to -1 use the library defaults.
+     */
+    public static final class Spec {
+        final float mElevation;
+        final float mMaxElevation;
+        // top left, top right, bottom right, bottom left
+        final float[] mCornerRadii = new float[4];
+        int mCornerMask = CORNER_ALL;
+        int mShadowStartColor = -1;
+        int mShadowEndColor = -1;
+        int mShadowRenderMode = SRoundRectDrawableWithShadow.RENDER_MODE_VECTOR;
+        boolean mNativeShadow = false;
+
+        public Spec(float cornerRadius, float elevation, float maxElevation) {
+            if (cornerRadius < 0f || elevation < 0f || maxElevation < 0f) {
+                throw new IllegalArgumentException("Invalid spec " + cornerRadius + ", " + elevation
+                        + ", " + maxElevation + ". Must be >= 0");
+            }
+            Arrays.fill(mCornerRadii, cornerRadius);
+            mElevation = elevation;
+            mMaxElevation = Math.max(elevation, maxElevation);
+        }
+
+        /**
+         * Reads the card attributes of a style, like an SCardView using it would.
+         */
+        public static Spec fromStyle(@NonNull Context context, @StyleRes int styleRes) {
+            TypedArray a = context.obtainStyledAttributes(styleRes, R.styleable.SCardView);
+            Spec spec = new Spec(a.getDimension(R.styleable.SCardView_cardCornerRadius, 0f),
+                    a.getDimension(R.styleable.SCardView_cardElevation, 0f),
+                    a.getDimension(R.styleable.SCardView_cardMaxElevation, 0f));
+            spec.mCornerMask = a.getInt(R.styleable.SCardView_cardCornerMask,
+                    toMask(a.getInt(R.styleable.SCardView_cardCornerVisibility, NONE)));
+            float radius = spec.mCornerRadii[0];
+            spec.setCornerRadii(a.getDimension(R.styleable.SCardView_cardTopLeftRadius, radius),
+                    a.getDimension(R.styleable.SCardView_cardTopRightRadius, radius),
+                    a.getDimension(R.styleable.SCardView_cardBottomRightRadius, radius),
+                    a.getDimension(R.styleable.SCardView_cardBottomLeftRadius, radius));
+            spec.mShadowStartColor = a.getColor(R.styleable.SCardView_cardShadowStartColor, -1);
+            spec.mShadowEndColor = a.getColor(R.styleable.SCardView_cardShadowEndColor, -1);
+            spec.mShadowRenderMode = a.getInt(R.styleable.SCardView_cardShadowRenderMode,
+                    SRoundRectDrawableWithShadow.RENDER_MODE_VECTOR);
+            boolean useNativeShadow = a.getBoolean(R.styleable.SCardView_cardUseNativeShadow, false);
+            int direction = a.getInt(R.styleable.SCardView_cardLightDirection, DIRECTION_TOP);
+            float lightAngle = a.getFloat(R.styleable.SCardView_cardLightAngle, Float.NaN);
+            boolean useGlobalLight = a.getBoolean(R.styleable.SCardView_cardUseGlobalLight, false);
+            a.recycle();
+            // those cards are drawn by the RenderThread, there is nothing to prewarm
+            boolean uniformRadii = spec.mCornerRadii[1] == radius && spec.mCornerRadii[2] == radius
+                    && spec.mCornerRadii[3] == radius;
+            // the same decision as SCardView.init
+            spec.mNativeShadow = useNativeShadow && SCardViewApi21Impl.canUseNativeShadow(direction,
+                    lightAngle, useGlobalLight, spec.mCornerMask, uniformRadii,
+                    spec.mShadowStartColor, spec.mShadowEndColor);
+            return spec;
+        }
+
+        public Spec setCornerVisibility(int cornerVisibility) {
+            return setCornerMask(toMask(cornerVisibility));
+        }
+
+        public Spec setCornerMask(int cornerMask) {
+            if ((cornerMask & ~CORNER_ALL) != 0) {
+                throw new IllegalArgumentException("Invalid corner mask " + cornerMask);
+            }
+            mCornerMask = cornerMask;
+            return this;
+        }
+
+        public Spec setCornerRadii(float topLeft, float topRight, float bottomRight, float bottomLeft) {
+            if (topLeft < 0f || topRight < 0f || bottomRight < 0f || bottomLeft < 0f) {
+                throw new IllegalArgumentException("Invalid radius. Must be >= 0");
+            }
+            mCornerRadii[0] = topLeft;
+            mCornerRadii[1] = topRight;
+            mCornerRadii[2] = bottomRight;
+            mCornerRadii[3] = bottomLeft;
+            return this;
+        }
+
+        public Spec setShadowColors(int startColor, int endColor) {
+            mShadowStartColor = startColor;
+            mShadowEndColor = endColor;
+            return this;
+        }
+
+        public Spec setShadowRenderMode(int renderMode) {
+            if (renderMode != SRoundRectDrawableWithShadow.RENDER_MODE_VECTOR
+                    && renderMode != SRoundRectDrawableWithShadow.RENDER_MODE_BITMAP) {
+                throw new IllegalArgumentException("Invalid render mode " + renderMode);
+            }
+            mShadowRenderMode = renderMode;
+            return this;
+        }
+    }
+
+    /**
+     * Prewarms the given configurations on the shared low priority background thread.
+     *
+     * @return completes once every configuration is cached
+     */
+    public static Future<?> prewarm(@NonNull Context context, @NonNull Spec... specs) {
+        return prewarm(context, getExecutor(), specs);
+    }
+
+    /**
+     * Same as above, running on the given executor.
+     */
+    public static Future<?> prewarm(@NonNull Context context, @NonNull ExecutorService executor,
+                                    @NonNull Spec... specs) {
+        // resolve everything needing the context here, the task only touches plain values
+        Resources resources = context.getResources();
+        final int insetShadow = resources.getDimensionPixelSize(R.dimen.cardview_compat_inset_shadow);
+        // cards without their own colors follow the palette, when one is set
+        int[] palette = ShadowPalette.getColors();
+        final int defaultStartColor = palette != null ? palette[0]
+                : resources.getColor(R.color.sl_cardview_shadow_start_color);
+        final int defaultEndColor = palette != null ? palette[1]
+                : resources.getColor(R.color.sl_cardview_shadow_end_color);
+        final List<Spec> pending = new ArrayList<>(Arrays.asList(specs));
+        return executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < pending.size(); i++) {
+                    prewarm(pending.get(i), insetShadow, defaultStartColor, defaultEndColor);
+                }
+            }
+        });
+    }
+
+    /**
+     * Builds the components exactly as a drawable with these parameters would look them up.
+     */
+    private static void prewarm(Spec spec, int insetShadow, int defaultStartColor, int defaultEndColor) {
+        if (spec.mNativeShadow) {
+            return;
+        }
+        ShadowGeometry geometry = new ShadowGeometry(insetShadow, DIRECTION_TOP, spec.mCornerMask);
+        geometry.setCornerRadii(spec.mCornerRadii[0], spec.mCornerRadii[1], spec.mCornerRadii[2],
+                spec.mCornerRadii[3]);
+        geometry.setShadowSize(spec.mElevation, spec.mMaxElevation);
+        int startColor = spec.mShadowStartColor == -1 ? defaultStartColor : spec.mShadowStartColor;
+        int endColor = spec.mShadowEndColor == -1 ? defaultEndColor : spec.mShadowEndColor;
+        // the caches publish their entries under their lock, the UI thread sees them fully built.
+        // One entry per distinct corner radius, square corners use the 0 radius entry
+        float[] radii = geometry.getResolvedRadii();
+        for (int i = 0; i < radii.length; i++) {
+            if (indexOf(radii, radii[i]) == i) {
+                ShadowCache.obtain(radii[i], geometry.getShadowSize(), startColor, endColor);
+            }
+        }
+        if (spec.mShadowRenderMode == SRoundRectDrawableWithShadow.RENDER_MODE_BITMAP
+                && geometry.isUniform()) {
+            ShadowBitmapCache.obtain(geometry.getCornerRadius(), geometry.getShadowSize(), startColor, endColor);
+        }
+    }
+
+    private static int indexOf(float[] values, float value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static ExecutorService getExecutor() {
+        synchronized (sLock) {
+            if (sExecutor == null) {
+                sExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        Thread thread = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "ShadowPrewarmer");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+            }
+            return sExecutor;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.xylitol.shadcardview;
+
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.RenderNode;
+import android.support.annotation.RequiresApi;
+
+/**
+ * declaration: the shadow of a card recorded once into a RenderNode and replayed on every frame,
+ * so redrawing a card whose shadow didn't change, e.g. for a pressed color, only re-records the
+ * surface. Kept apart from {@link SRoundRectDrawableWithShadow} so older platforms never load the
+ * API 29 classes.
+ * time:
+ */
+@RequiresApi(29)
+final class ShadowRenderNode {
+
+    private final RenderNode mNode = new RenderNode("SCardViewShadow");
+    private boolean mValid = false;
+
+    /**
+     * Drops the recording, the next frame records the shadow again.
+     */
+    void invalidate() {
+        mValid = false;
+    }
+
+    /**
+     * Returns whether the recording can be replayed as it is. The platform may also discard it,
+     * e.g. when the window goes to the background.
+     */
+    boolean isValid() {
+        return mValid && mNode.hasDisplayList();
+    }
+
+    /**
+     * Starts recording a shadow drawn in the given drawable bounds, end it with
+     * {@link #endRecording}.
+     */
+    Canvas beginRecording(Rect bounds) {
+        // drawable coordinates are kept, the node starts at the origin and may draw outside
+        mNode.setPosition(0, 0, bounds.right, bounds.bottom);
+        mNode.setClipToBounds(false);
+        return mNode.beginRecording();
+    }
+
+    void endRecording() {
+        mNode.endRecording();
+        mValid = true;
+    }
+
+    void draw(Canvas canvas) {
+        canvas.drawRenderNode(mNode);
+    }
+
+    /**
+     * Frees the recording, used when the card stops drawing its shadow.
+     */
+    void discard() {
+        mNode.discardDisplayList();
+        mValid = false;
+    }
+}
@@ -0,0 +1,80 @@
+package com.xylitol.shadcardview;
+
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * declaration: full SRoundRectDrawableWithShadow.draw() against a recording Canvas. The steady
+ * state benchmark should report no allocation with -prof gc, the resize one includes the
+ * component rebuild triggered by a bounds change and the animated one is a frame of
+ * SCardView.animateCardElevation.
+ * time:
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ShadowDrawBenchmark {
+
+    @Param({"0", "1"})
+    public int renderMode;
+
+    // none and noLeftCorner
+    @Param({"7", "1"})
+    public int cornerVisibility;
+
+    private SRoundRectDrawableWithShadow mDrawable;
+    private final Canvas mCanvas = new Canvas();
+    private boolean mWide;
+    private boolean mLifted;
+
+    @Setup
+    public void setUp() {
+        mDrawable = new SRoundRectDrawableWithShadow(null, new Resources(3f),
+                ColorStateList.valueOf(0xFFFFFFFF), 24f, 12f, 12f, ShadowDirection.DIRECTION_TOP,
+                cornerVisibility, -1, -1);
+        mDrawable.setShadowRenderMode(renderMode);
+        mDrawable.setBounds(0, 0, 1080, 480);
+        // builds the components once, like the first frame of a card
+        mDrawable.draw(mCanvas);
+    }
+
+    @Benchmark
+    public int draw() {
+        mCanvas.reset();
+        mDrawable.draw(mCanvas);
+        return mCanvas.getTotalOpCount();
+    }
+
+    @Benchmark
+    public int drawAfterResize() {
+        mWide = !mWide;
+        mDrawable.setBounds(0, 0, mWide ? 1080 : 1040, 480);
+        mCanvas.reset();
+        mDrawable.draw(mCanvas);
+        return mCanvas.getTotalOpCount();
+    }
+
+    @Benchmark
+    public int drawAnimatedFrame() {
+        mLifted = !mLifted;
+        if (!mLifted) {
+            mDrawable.beginShadowAnimation(4f, 12f);
+        }
+        mDrawable.setAnimatedShadowSize(mLifted ? 8f : 4f);
+        mCanvas.reset();
+        mDrawable.draw(mCanvas);
+        return mCanvas.getTotalOpCount();
+    }
+}
@@ -0,0 +1,83 @@
+package com.xylitol.shadcardview;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * declaration: geometry run whenever a card changes its shadow, padding or size. ShadowGeometry
+ * has no android dependency, so these numbers don't depend on the stand-ins.
+ * time:
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ShadowGeometryBenchmark {
+
+    // top, LT and none
+    @Param({"3", "5", "9"})
+    public int direction;
+
+    // none, noLeftCorner and noLT_RBCorner
+    @Param({"7", "1", "5"})
+    public int cornerVisibility;
+
+    private ShadowGeometry mGeometry;
+    private float mAngle;
+
+    @Setup
+    public void setUp() {
+        mGeometry = new ShadowGeometry(3, direction, CornerVisibility.toMask(cornerVisibility));
+        mGeometry.setCornerRadius(24f);
+        mGeometry.setShadowSize(12f, 12f);
+        mGeometry.build(0f, 0f, 1080f, 480f);
+    }
+
+    @Benchmark
+    public float[] calculateShadowDirection() {
+        mGeometry.calculateShadowDirection();
+        return mGeometry.getDrawList();
+    }
+
+    @Benchmark
+    public float[] setLightAngle() {
+        // alternate so every call recomputes the offsets
+        mAngle = mAngle == 30f ? 210f : 30f;
+        mGeometry.setLightAngle(mAngle);
+        return mGeometry.getDrawList();
+    }
+
+    @Benchmark
+    public ShadowGeometry resolveCornerRadii() {
+        mGeometry.resolveCornerRadii();
+        return mGeometry;
+    }
+
+    @Benchmark
+    public float[] build() {
+        mGeometry.build(0f, 0f, 1080f, 480f);
+        return mGeometry.getDrawList();
+    }
+
+    @Benchmark
+    public double getPadding() {
+        return mGeometry.getVerticalPadding() + mGeometry.getHorizontalPadding();
+    }
+
+    @Benchmark
+    public float getMinWidth() {
+        return mGeometry.getMinWidth();
+    }
+
+    @Benchmark
+    public float getMinHeight() {
+        return mGeometry.getMinHeight();
+    }
+}
@@ -0,0 +1,56 @@
+package com.xylitol.shadcardview;
+
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * declaration: redraw of a card whose surface color changed, e.g. when pressed, on a hardware
+ * accelerated canvas. With the RenderNode the recorded shadow is replayed as one operation,
+ * without it every shadow operation is issued again.
+ * time:
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ShadowRenderNodeBenchmark {
+
+    @Param({"true", "false"})
+    public boolean useRenderNode;
+
+    private SRoundRectDrawableWithShadow mDrawable;
+    private final Canvas mCanvas = new Canvas();
+    private final ColorStateList mColor = ColorStateList.valueOf(0xFFFFFFFF);
+    private final ColorStateList mPressedColor = ColorStateList.valueOf(0xFFEEEEEE);
+    private boolean mPressed;
+
+    @Setup
+    public void setUp() {
+        mDrawable = new SRoundRectDrawableWithShadow(null, new Resources(3f), mColor, 24f, 12f, 12f,
+                ShadowDirection.DIRECTION_TOP, CornerVisibility.NONE, -1, -1);
+        mDrawable.setUseRenderNode(useRenderNode);
+        mDrawable.setBounds(0, 0, 1080, 480);
+        mCanvas.setHardwareAccelerated(true);
+        mDrawable.draw(mCanvas);
+    }
+
+    @Benchmark
+    public int drawAfterColorChange() {
+        mPressed = !mPressed;
+        mDrawable.setColor(mPressed ? mPressedColor : mColor);
+        mCanvas.reset();
+        mDrawable.draw(mCanvas);
+        return mCanvas.getTotalOpCount();
+    }
+}
@@ -0,0 +1,7 @@
+package android.content;
+
+public abstract class Context {
+    public abstract Context getApplicationContext();
+
+    public abstract void registerComponentCallbacks(ComponentCallbacks callback);
+}
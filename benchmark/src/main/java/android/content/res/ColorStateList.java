@@ -0,0 +1,29 @@
+package android.content.res;
+
+public class ColorStateList {
+    private final int mDefaultColor;
+
+    private ColorStateList(int color) {
+        mDefaultColor = color;
+    }
+
+    public static ColorStateList valueOf(int color) {
+        return new ColorStateList(color);
+    }
+
+    public int getColorForState(int[] stateSet, int defaultColor) {
+        return mDefaultColor;
+    }
+
+    public int getDefaultColor() {
+        return mDefaultColor;
+    }
+
+    public boolean isStateful() {
+        return false;
+    }
+
+    public boolean isOpaque() {
+        return (mDefaultColor >>> 24) == 0xFF;
+    }
+}
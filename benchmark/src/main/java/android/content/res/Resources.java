@@ -0,0 +1,34 @@
+package android.content.res;
+
+import com.xylitol.shadcardview.R;
+
+/**
+ * Stand-in returning the values of the library resources the drawable reads.
+ */
+public class Resources {
+    private final float mDensity;
+
+    public Resources(float density) {
+        mDensity = density;
+    }
+
+    public int getColor(int id) {
+        if (id == R.color.sl_cardview_shadow_start_color) {
+            return 0x37000000;
+        } else if (id == R.color.sl_cardview_shadow_end_color) {
+            return 0x03000000;
+        } else if (id == R.color.sl_cardview_light_background) {
+            return 0xFFFFFFFF;
+        } else if (id == R.color.sl_cardview_dark_background) {
+            return 0xFF424242;
+        }
+        throw new IllegalArgumentException("Unknown color " + id);
+    }
+
+    public int getDimensionPixelSize(int id) {
+        if (id == R.dimen.cardview_compat_inset_shadow) {
+            return (int) (mDensity + 0.5f);
+        }
+        throw new IllegalArgumentException("Unknown dimen " + id);
+    }
+}
@@ -0,0 +1,40 @@
+package android.graphics;
+
+public class Bitmap {
+    public enum Config {
+        ALPHA_8, ARGB_8888
+    }
+
+    private final int mWidth;
+    private final int mHeight;
+    private final Config mConfig;
+
+    private Bitmap(int width, int height, Config config) {
+        mWidth = width;
+        mHeight = height;
+        mConfig = config;
+    }
+
+    public static Bitmap createBitmap(int width, int height, Config config) {
+        return new Bitmap(width, height, config);
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getByteCount() {
+        return mWidth * mHeight * (mConfig == Config.ALPHA_8 ? 1 : 4);
+    }
+
+    public int getAllocationByteCount() {
+        return getByteCount();
+    }
+
+    public void prepareToDraw() {
+    }
+}
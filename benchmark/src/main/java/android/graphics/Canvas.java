@@ -0,0 +1,130 @@
+package android.graphics;
+
+/**
+ * Stand-in of the platform Canvas that records the number of calls made on it instead of
+ * drawing, so draw() can be measured on a plain JVM.
+ */
+public class Canvas {
+    public static final int OP_SAVE = 0;
+    public static final int OP_RESTORE = 1;
+    public static final int OP_TRANSFORM = 2;
+    public static final int OP_DRAW = 3;
+
+    private final int[] mOpCounts = new int[4];
+    private int mSaveCount = 1;
+    private boolean mHardwareAccelerated = false;
+
+    public Canvas() {
+    }
+
+    public Canvas(Bitmap bitmap) {
+    }
+
+    public int getOpCount(int op) {
+        return mOpCounts[op];
+    }
+
+    public int getTotalOpCount() {
+        return mOpCounts[OP_SAVE] + mOpCounts[OP_RESTORE] + mOpCounts[OP_TRANSFORM] + mOpCounts[OP_DRAW];
+    }
+
+    public void reset() {
+        for (int i = 0; i < mOpCounts.length; i++) {
+            mOpCounts[i] = 0;
+        }
+        mSaveCount = 1;
+    }
+
+    public int save() {
+        mOpCounts[OP_SAVE]++;
+        return mSaveCount++;
+    }
+
+    public int getSaveCount() {
+        return mSaveCount;
+    }
+
+    public void restore() {
+        mOpCounts[OP_RESTORE]++;
+        mSaveCount--;
+    }
+
+    public void restoreToCount(int saveCount) {
+        mOpCounts[OP_RESTORE]++;
+        mSaveCount = saveCount;
+    }
+
+    public void translate(float dx, float dy) {
+        mOpCounts[OP_TRANSFORM]++;
+    }
+
+    public void rotate(float degrees) {
+        mOpCounts[OP_TRANSFORM]++;
+    }
+
+    public void scale(float sx, float sy) {
+        mOpCounts[OP_TRANSFORM]++;
+    }
+
+    public void scale(float sx, float sy, float px, float py) {
+        mOpCounts[OP_TRANSFORM]++;
+    }
+
+    public boolean clipRect(float left, float top, float right, float bottom) {
+        mOpCounts[OP_TRANSFORM]++;
+        return true;
+    }
+
+    public boolean clipRect(float left, float top, float right, float bottom, Region.Op op) {
+        mOpCounts[OP_TRANSFORM]++;
+        return true;
+    }
+
+    public boolean clipOutRect(float left, float top, float right, float bottom) {
+        mOpCounts[OP_TRANSFORM]++;
+        return true;
+    }
+
+    public boolean isHardwareAccelerated() {
+        return mHardwareAccelerated;
+    }
+
+    /**
+     * Stand-in only, lets a benchmark take the hardware accelerated paths.
+     */
+    public void setHardwareAccelerated(boolean hardwareAccelerated) {
+        mHardwareAccelerated = hardwareAccelerated;
+    }
+
+    public void drawRenderNode(RenderNode renderNode) {
+        mOpCounts[OP_DRAW]++;
+    }
+
+    public void drawPath(Path path, Paint paint) {
+        mOpCounts[OP_DRAW]++;
+    }
+
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        mOpCounts[OP_DRAW]++;
+    }
+
+    public void drawRect(RectF rect, Paint paint) {
+        mOpCounts[OP_DRAW]++;
+    }
+
+    public void drawRoundRect(RectF rect, float rx, float ry, Paint paint) {
+        mOpCounts[OP_DRAW]++;
+    }
+
+    public void drawArc(RectF oval, float startAngle, float sweepAngle, boolean useCenter, Paint paint) {
+        mOpCounts[OP_DRAW]++;
+    }
+
+    public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+        mOpCounts[OP_DRAW]++;
+    }
+
+    public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+        mOpCounts[OP_DRAW]++;
+    }
+}
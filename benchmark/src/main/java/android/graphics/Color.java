@@ -0,0 +1,10 @@
+package android.graphics;
+
+public class Color {
+    public static final int TRANSPARENT = 0;
+    public static final int BLACK = 0xFF000000;
+
+    public static int alpha(int color) {
+        return color >>> 24;
+    }
+}
@@ -0,0 +1,7 @@
+package android.graphics;
+
+public class LinearGradient extends Shader {
+    public LinearGradient(float x0, float y0, float x1, float y1, int[] colors, float[] positions,
+                          TileMode tile) {
+    }
+}
@@ -0,0 +1,82 @@
+package android.graphics;
+
+public class Paint {
+    public static final int ANTI_ALIAS_FLAG = 1;
+    public static final int FILTER_BITMAP_FLAG = 2;
+    public static final int DITHER_FLAG = 4;
+
+    public enum Style {
+        FILL, STROKE, FILL_AND_STROKE
+    }
+
+    private int mFlags;
+    private int mColor = Color.BLACK;
+    private Style mStyle = Style.FILL;
+    private Shader mShader;
+    private ColorFilter mColorFilter;
+
+    public Paint() {
+    }
+
+    public Paint(int flags) {
+        mFlags = flags;
+    }
+
+    public Paint(Paint paint) {
+        set(paint);
+    }
+
+    public void set(Paint src) {
+        mFlags = src.mFlags;
+        mColor = src.mColor;
+        mStyle = src.mStyle;
+        mShader = src.mShader;
+        mColorFilter = src.mColorFilter;
+    }
+
+    public void setStyle(Style style) {
+        mStyle = style;
+    }
+
+    public void setColor(int color) {
+        mColor = color;
+    }
+
+    public int getColor() {
+        return mColor;
+    }
+
+    public void setAlpha(int a) {
+        mColor = (mColor & 0x00FFFFFF) | (a << 24);
+    }
+
+    public int getAlpha() {
+        return mColor >>> 24;
+    }
+
+    public void setAntiAlias(boolean aa) {
+        mFlags = aa ? mFlags | ANTI_ALIAS_FLAG : mFlags & ~ANTI_ALIAS_FLAG;
+    }
+
+    public void setFilterBitmap(boolean filter) {
+        mFlags = filter ? mFlags | FILTER_BITMAP_FLAG : mFlags & ~FILTER_BITMAP_FLAG;
+    }
+
+    public Shader setShader(Shader shader) {
+        mShader = shader;
+        return shader;
+    }
+
+    public Shader getShader() {
+        return mShader;
+    }
+
+    public ColorFilter setColorFilter(ColorFilter filter) {
+        mColorFilter = filter;
+        return filter;
+    }
+
+    public ColorFilter getColorFilter() {
+        return mColorFilter;
+    }
+}
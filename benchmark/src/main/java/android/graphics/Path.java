@@ -0,0 +1,62 @@
+package android.graphics;
+
+public class Path {
+    public enum FillType {
+        WINDING, EVEN_ODD, INVERSE_WINDING, INVERSE_EVEN_ODD
+    }
+
+    public enum Direction {
+        CW, CCW
+    }
+
+    private FillType mFillType = FillType.WINDING;
+    private int mVerbCount;
+
+    public Path() {
+    }
+
+    public Path(Path src) {
+        mFillType = src.mFillType;
+        mVerbCount = src.mVerbCount;
+    }
+
+    public void reset() {
+        mVerbCount = 0;
+    }
+
+    public void rewind() {
+        mVerbCount = 0;
+    }
+
+    public boolean isEmpty() {
+        return mVerbCount == 0;
+    }
+
+    public void setFillType(FillType ft) {
+        mFillType = ft;
+    }
+
+    public void moveTo(float x, float y) {
+        mVerbCount++;
+    }
+
+    public void lineTo(float x, float y) {
+        mVerbCount++;
+    }
+
+    public void rLineTo(float dx, float dy) {
+        mVerbCount++;
+    }
+
+    public void arcTo(RectF oval, float startAngle, float sweepAngle, boolean forceMoveTo) {
+        mVerbCount++;
+    }
+
+    public void addRoundRect(RectF rect, float[] radii, Direction dir) {
+        mVerbCount++;
+    }
+
+    public void close() {
+        mVerbCount++;
+    }
+}
@@ -0,0 +1,7 @@
+package android.graphics;
+
+public class RadialGradient extends Shader {
+    public RadialGradient(float centerX, float centerY, float radius, int[] colors, float[] stops,
+                          TileMode tileMode) {
+    }
+}
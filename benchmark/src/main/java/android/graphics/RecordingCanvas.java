@@ -0,0 +1,8 @@
+package android.graphics;
+
+public class RecordingCanvas extends Canvas {
+
+    RecordingCanvas() {
+        setHardwareAccelerated(true);
+    }
+}
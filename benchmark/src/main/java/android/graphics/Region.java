@@ -0,0 +1,7 @@
+package android.graphics;
+
+public class Region {
+    public enum Op {
+        DIFFERENCE, INTERSECT
+    }
+}
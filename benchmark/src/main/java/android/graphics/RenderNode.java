@@ -0,0 +1,38 @@
+package android.graphics;
+
+/**
+ * Stand-in of the platform RenderNode, its recording canvas counts the recorded calls like
+ * {@link Canvas} does.
+ */
+public final class RenderNode {
+    private final RecordingCanvas mCanvas = new RecordingCanvas();
+    private boolean mHasDisplayList = false;
+
+    public RenderNode(String name) {
+    }
+
+    public boolean setPosition(int left, int top, int right, int bottom) {
+        return true;
+    }
+
+    public boolean setClipToBounds(boolean clipToBounds) {
+        return true;
+    }
+
+    public RecordingCanvas beginRecording() {
+        mCanvas.reset();
+        return mCanvas;
+    }
+
+    public void endRecording() {
+        mHasDisplayList = true;
+    }
+
+    public boolean hasDisplayList() {
+        return mHasDisplayList;
+    }
+
+    public void discardDisplayList() {
+        mHasDisplayList = false;
+    }
+}
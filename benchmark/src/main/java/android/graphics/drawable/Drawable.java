@@ -0,0 +1,107 @@
+package android.graphics.drawable;
+
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Rect;
+
+public abstract class Drawable {
+    private static final int[] EMPTY_STATE = new int[0];
+
+    private final Rect mBounds = new Rect();
+    private int[] mStateSet = EMPTY_STATE;
+    private Callback mCallback;
+
+    public abstract void draw(Canvas canvas);
+
+    public abstract void setAlpha(int alpha);
+
+    public abstract void setColorFilter(ColorFilter colorFilter);
+
+    public abstract int getOpacity();
+
+    public void setBounds(int left, int top, int right, int bottom) {
+        if (mBounds.left != left || mBounds.top != top || mBounds.right != right
+                || mBounds.bottom != bottom) {
+            mBounds.set(left, top, right, bottom);
+            onBoundsChange(mBounds);
+        }
+    }
+
+    public void setBounds(Rect bounds) {
+        setBounds(bounds.left, bounds.top, bounds.right, bounds.bottom);
+    }
+
+    public final Rect getBounds() {
+        return mBounds;
+    }
+
+    protected void onBoundsChange(Rect bounds) {
+    }
+
+    public boolean getPadding(Rect padding) {
+        padding.set(0, 0, 0, 0);
+        return false;
+    }
+
+    public boolean setState(int[] stateSet) {
+        if (mStateSet != stateSet) {
+            mStateSet = stateSet;
+            return onStateChange(stateSet);
+        }
+        return false;
+    }
+
+    public int[] getState() {
+        return mStateSet;
+    }
+
+    protected boolean onStateChange(int[] state) {
+        return false;
+    }
+
+    public boolean isStateful() {
+        return false;
+    }
+
+    public void invalidateSelf() {
+    }
+
+    public final void setCallback(Callback callback) {
+        mCallback = callback;
+    }
+
+    public Callback getCallback() {
+        return mCallback;
+    }
+
+    public interface Callback {
+        void invalidateDrawable(Drawable who);
+
+        void scheduleDrawable(Drawable who, Runnable what, long when);
+
+        void unscheduleDrawable(Drawable who, Runnable what);
+    }
+
+    public ConstantState getConstantState() {
+        return null;
+    }
+
+    public Drawable mutate() {
+        return this;
+    }
+
+    public int getChangingConfigurations() {
+        return 0;
+    }
+
+    public abstract static class ConstantState {
+        public abstract Drawable newDrawable();
+
+        public Drawable newDrawable(Resources res) {
+            return newDrawable();
+        }
+
+        public abstract int getChangingConfigurations();
+    }
+}
@@ -0,0 +1,15 @@
+package android.os;
+
+public class Build {
+    public static class VERSION {
+        // the benchmarks model a current device
+        public static final int SDK_INT = 30;
+    }
+
+    public static class VERSION_CODES {
+        public static final int LOLLIPOP = 21;
+        public static final int O = 26;
+        public static final int P = 28;
+        public static final int Q = 29;
+    }
+}
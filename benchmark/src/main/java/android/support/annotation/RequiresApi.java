@@ -0,0 +1,5 @@
+package android.support.annotation;
+
+public @interface RequiresApi {
+    int value();
+}
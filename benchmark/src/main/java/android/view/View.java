@@ -0,0 +1,7 @@
+package android.view;
+
+/**
+ * Only referenced by SCardViewDelegate, the benchmarks never create one.
+ */
+public class View {
+}
@@ -0,0 +1,17 @@
+package com.xylitol.shadcardview;
+
+/**
+ * Stand-in of the generated R class for the resources read by the drawable.
+ */
+public final class R {
+    public static final class color {
+        public static final int sl_cardview_dark_background = 0x7f010000;
+        public static final int sl_cardview_light_background = 0x7f010001;
+        public static final int sl_cardview_shadow_end_color = 0x7f010002;
+        public static final int sl_cardview_shadow_start_color = 0x7f010003;
+    }
+
+    public static final class dimen {
+        public static final int cardview_compat_inset_shadow = 0x7f020000;
+    }
+}
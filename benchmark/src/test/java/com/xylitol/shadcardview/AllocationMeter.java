@@ -0,0 +1,45 @@
+package com.xylitol.shadcardview;
+
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * declaration: bytes allocated by the calling thread, for the tests checking that a hot path
+ * doesn't allocate. Skips the test on JVMs that don't report per thread allocations.
+ * time:
+ */
+final class AllocationMeter {
+
+    private final com.sun.management.ThreadMXBean mThreadBean;
+    // bytes the measurement itself allocates
+    private long mOverhead;
+
+    AllocationMeter() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        mThreadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(mThreadBean.isThreadAllocatedMemorySupported());
+        mThreadBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    /**
+     * Starts a measurement, pass the returned value to {@link #allocatedSince}.
+     */
+    long start() {
+        long overhead = allocatedBytes();
+        mOverhead = allocatedBytes() - overhead;
+        return allocatedBytes();
+    }
+
+    /**
+     * Returns the bytes allocated since {@code start}, without those of the measurement.
+     */
+    long allocatedSince(long start) {
+        return allocatedBytes() - start - mOverhead;
+    }
+
+    private long allocatedBytes() {
+        return mThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,226 @@
+package com.xylitol.shadcardview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * declaration: builds and draws cards on several threads at once, like AsyncLayoutInflater
+ * inflating screens while the UI thread draws, while the palette and the light keep changing.
+ * Every card must end up with the components of its own radius and shadow size and draw the same
+ * operations as a card built alone.
+ * time:
+ */
+public class ConcurrentCardBuildTest {
+
+    private static final int THREADS = 8;
+    private static final int CARDS_PER_THREAD = 2000;
+    private static final float[] RADII = {0f, 8f, 24f};
+    private static final float[] ELEVATIONS = {2f, 6f, 12f};
+
+    @After
+    public void tearDown() {
+        ShadowPalette.clear();
+        ShadowLight.clear();
+        ShadowCache.clear();
+    }
+
+    @Test
+    public void buildCardsOnSeveralThreads() throws Exception {
+        // what each combination draws when nothing else runs
+        int[] expectedOps = new int[RADII.length * ELEVATIONS.length];
+        for (int i = 0; i < expectedOps.length; i++) {
+            expectedOps[i] = drawOps(newCard(i), new Canvas());
+        }
+        ShadowCache.clear();
+
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        try {
+            List<Future<Integer>> builders = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                final int seed = t;
+                builders.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        start.await();
+                        Canvas canvas = new Canvas();
+                        for (int i = 0; i < CARDS_PER_THREAD; i++) {
+                            int combination = (seed + i) % expectedOps.length;
+                            SRoundRectDrawableWithShadow card = newCard(combination);
+                            if (i % 2 == 1) {
+                                // clones share the state of the card they come from
+                                card = (SRoundRectDrawableWithShadow) card.getConstantState().newDrawable();
+                                card.setBounds(0, 0, 640, 320);
+                            }
+                            assertEquals(expectedOps[combination], drawOps(card, canvas));
+                            assertComponents(card, combination);
+                        }
+                        return CARDS_PER_THREAD;
+                    }
+                }));
+            }
+            Future<?> changer = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    for (int i = 0; i < 500; i++) {
+                        ShadowPalette.setColors(0x37000000 + i, 0x03000000);
+                        ShadowLight.setPosition(i, -i);
+                    }
+                    return null;
+                }
+            });
+            start.countDown();
+            int built = 0;
+            for (Future<Integer> builder : builders) {
+                built += builder.get(60, TimeUnit.SECONDS);
+            }
+            changer.get(60, TimeUnit.SECONDS);
+            assertEquals(THREADS * CARDS_PER_THREAD, built);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void lightPositionIsNeverTorn() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    start.await();
+                    for (int i = 1; i <= 200000; i++) {
+                        ShadowLight.setPosition(i, -i);
+                    }
+                    return null;
+                }
+            });
+            List<Future<Void>> readers = new ArrayList<>();
+            for (int t = 1; t < THREADS; t++) {
+                readers.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        float[] position = new float[2];
+                        for (int i = 0; i < 200000; i++) {
+                            if (ShadowLight.getPosition(position)) {
+                                assertEquals("x and y of one position", -position[0], position[1], 0f);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Void> reader : readers) {
+                reader.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void clonesDrawWithTheirOwnRoundRectHelper() throws Exception {
+        final Set<SRoundRectDrawableWithShadow.RoundRectHelper> helpers = Collections.newSetFromMap(
+                new ConcurrentHashMap<SRoundRectDrawableWithShadow.RoundRectHelper, Boolean>());
+        final SRoundRectDrawableWithShadow card = newCard(0);
+        card.setRoundRectHelperFactory(new SRoundRectDrawableWithShadow.RoundRectHelper.Factory() {
+            @Override
+            public SRoundRectDrawableWithShadow.RoundRectHelper create() {
+                SRoundRectDrawableWithShadow.RoundRectHelper helper =
+                        new SRoundRectDrawableWithShadow.RoundRectHelper() {
+                            @Override
+                            public void drawRoundRect(Canvas canvas, RectF bounds, float[] cornerRadii,
+                                                      Paint paint) {
+                            }
+                        };
+                helpers.add(helper);
+                return helper;
+            }
+        });
+
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> drawers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                drawers.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        Canvas canvas = new Canvas();
+                        for (int i = 0; i < 100; i++) {
+                            SRoundRectDrawableWithShadow clone =
+                                    (SRoundRectDrawableWithShadow) card.getConstantState().newDrawable();
+                            clone.setBounds(0, 0, 640, 320);
+                            drawOps(clone, canvas);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Void> drawer : drawers) {
+                drawer.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        // one helper for the card and one for every clone, none shared between threads
+        assertEquals(1 + THREADS * 100, helpers.size());
+    }
+
+    private static SRoundRectDrawableWithShadow newCard(int combination) {
+        float radius = RADII[combination / ELEVATIONS.length];
+        float elevation = ELEVATIONS[combination % ELEVATIONS.length];
+        SRoundRectDrawableWithShadow card = new SRoundRectDrawableWithShadow(null,
+                new Resources(3f), ColorStateList.valueOf(0xFFFFFFFF), radius, elevation,
+                elevation, ShadowDirection.DIRECTION_TOP, CornerVisibility.NONE, -1, -1);
+        card.setBounds(0, 0, 640, 320);
+        return card;
+    }
+
+    private static int drawOps(SRoundRectDrawableWithShadow card, Canvas canvas) {
+        canvas.reset();
+        card.draw(canvas);
+        return canvas.getTotalOpCount();
+    }
+
+    /**
+     * The components may have been built by any thread, they must still be the ones of the card.
+     */
+    private static void assertComponents(SRoundRectDrawableWithShadow card, int combination) {
+        SRoundRectDrawableWithShadow alone = newCard(combination);
+        for (int record = 0; record < ShadowGeometry.CORNER_COUNT; record++) {
+            ShadowCache.Key expected = alone.getShadowComponents(record).key;
+            ShadowCache.Key actual = card.getShadowComponents(record).key;
+            assertTrue("components of corner record " + record,
+                    expected.cornerRadius == actual.cornerRadius
+                            && expected.shadowSize == actual.shadowSize);
+        }
+    }
+}
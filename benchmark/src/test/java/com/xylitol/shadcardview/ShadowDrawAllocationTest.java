@@ -0,0 +1,69 @@
+package com.xylitol.shadcardview;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * declaration: once the first frame built the shadow components, SRoundRectDrawableWithShadow.draw()
+ * must not allocate. Counts the bytes allocated by the test thread around repeated draws on the
+ * recording Canvas, on JVMs that report per thread allocations.
+ * time:
+ */
+public class ShadowDrawAllocationTest {
+
+    private static final int FRAMES = 1000;
+
+    private AllocationMeter mMeter;
+    private final Canvas mCanvas = new Canvas();
+
+    @Before
+    public void setUp() {
+        mMeter = new AllocationMeter();
+    }
+
+    @Test
+    public void vectorDrawDoesNotAllocate() {
+        assertSteadyStateAllocations(SRoundRectDrawableWithShadow.RENDER_MODE_VECTOR,
+                CornerVisibility.NONE);
+    }
+
+    @Test
+    public void vectorDrawWithHiddenCornersDoesNotAllocate() {
+        assertSteadyStateAllocations(SRoundRectDrawableWithShadow.RENDER_MODE_VECTOR,
+                CornerVisibility.NOLEFTCORNER);
+    }
+
+    @Test
+    public void bitmapDrawDoesNotAllocate() {
+        assertSteadyStateAllocations(SRoundRectDrawableWithShadow.RENDER_MODE_BITMAP,
+                CornerVisibility.NONE);
+    }
+
+    private void assertSteadyStateAllocations(int renderMode, int cornerVisibility) {
+        SRoundRectDrawableWithShadow drawable = new SRoundRectDrawableWithShadow(null,
+                new Resources(3f), ColorStateList.valueOf(0xFFFFFFFF), 24f, 12f, 12f,
+                ShadowDirection.DIRECTION_TOP, cornerVisibility, -1, -1);
+        drawable.setShadowRenderMode(renderMode);
+        drawable.setBounds(0, 0, 1080, 480);
+        // the first frame builds the components, the next ones only draw them
+        drawFrames(drawable, 2);
+
+        long start = mMeter.start();
+        drawFrames(drawable, FRAMES);
+        long allocated = mMeter.allocatedSince(start);
+        assertEquals("bytes allocated by " + FRAMES + " frames", 0L, allocated);
+    }
+
+    private void drawFrames(SRoundRectDrawableWithShadow drawable, int frames) {
+        for (int i = 0; i < frames; i++) {
+            mCanvas.reset();
+            drawable.draw(mCanvas);
+        }
+    }
+}
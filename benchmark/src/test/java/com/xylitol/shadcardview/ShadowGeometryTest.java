@@ -0,0 +1,330 @@
+package com.xylitol.shadcardview;
+
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_EDGE_BOTTOM;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_EDGE_RIGHT;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_EDGE_TOP;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_HAS_EDGE;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_RADIUS;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_ROTATION;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_STRIDE;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_TX;
+import static com.xylitol.shadcardview.ShadowGeometry.CORNER_TY;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_CARD_BOTTOM;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_CARD_DX;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_CARD_DY;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_CARD_LEFT;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_CARD_RIGHT;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_CARD_TOP;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_CORNERS;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_SHADOW_DX;
+import static com.xylitol.shadcardview.ShadowGeometry.DL_SHADOW_DY;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * declaration: the draw list ShadowGeometry emits for a card, checked against values worked out by
+ * hand. The card is 100x80 with a radius of 8, a shadow of 4, a max shadow of 6 and an inset of 1,
+ * so it sits 6px from the sides and 9px from the top and bottom, and every corner center is
+ * 8 + 1 + 4 / 2 = 11px inside the card.
+ * time:
+ */
+public class ShadowGeometryTest {
+
+    private static final float DELTA = 1e-4f;
+
+    // draw list order of the corner records
+    static final int LT = 0;
+    static final int RB = 1;
+    static final int LB = 2;
+    static final int RT = 3;
+
+    static ShadowGeometry newGeometry(int lightDirection) {
+        ShadowGeometry geometry = new ShadowGeometry(1, lightDirection, CornerVisibility.CORNER_ALL);
+        geometry.setCornerRadius(8f);
+        geometry.setShadowSize(4f, 6f);
+        return geometry;
+    }
+
+    static float corner(ShadowGeometry geometry, int corner, int field) {
+        return geometry.getDrawList()[DL_CORNERS + corner * CORNER_STRIDE + field];
+    }
+
+    @Test
+    public void cardIsInsetByTheMaxShadow() {
+        ShadowGeometry geometry = newGeometry(ShadowDirection.DIRECTION_NONE);
+        geometry.build(0f, 0f, 100f, 80f);
+        float[] drawList = geometry.getDrawList();
+
+        assertEquals(6f, drawList[DL_CARD_LEFT], DELTA);
+        assertEquals(9f, drawList[DL_CARD_TOP], DELTA);
+        assertEquals(94f, drawList[DL_CARD_RIGHT], DELTA);
+        assertEquals(71f, drawList[DL_CARD_BOTTOM], DELTA);
+        // 4 * 1.5 + 1 + .5
+        assertEquals(7.5f, geometry.getShadowSize(), DELTA);
+    }
+
+    @Test
+    public void cornersRotateAroundTheCard() {
+        ShadowGeometry geometry = newGeometry(ShadowDirection.DIRECTION_NONE);
+        geometry.build(0f, 0f, 100f, 80f);
+
+        assertCorner(geometry, LT, 17f, 20f, 0f);
+        assertCorner(geometry, RB, 83f, 60f, 180f);
+        assertCorner(geometry, LB, 17f, 60f, 270f);
+        assertCorner(geometry, RT, 83f, 20f, 90f);
+    }
+
+    @Test
+    public void edgesSpanTheGapBetweenCorners() {
+        ShadowGeometry geometry = newGeometry(ShadowDirection.DIRECTION_NONE);
+        geometry.build(0f, 0f, 100f, 80f);
+
+        // the card is 88x62 and each end of an edge loses 11px to its corner
+        assertEdge(geometry, LT, 66f);
+        assertEdge(geometry, RB, 66f);
+        assertEdge(geometry, LB, 40f);
+        assertEdge(geometry, RT, 40f);
+        for (int i = 0; i < ShadowGeometry.CORNER_COUNT; i++) {
+            assertEquals(-15.5f, corner(geometry, i, CORNER_EDGE_TOP), DELTA);
+            assertEquals(-8f, corner(geometry, i, CORNER_EDGE_BOTTOM), DELTA);
+        }
+    }
+
+    @Test
+    public void edgesDisappearWhenCornersMeet() {
+        ShadowGeometry geometry = newGeometry(ShadowDirection.DIRECTION_NONE);
+        // a 22px wide card is filled by its two corners
+        geometry.build(0f, 0f, 34f, 80f);
+
+        assertEdge(geometry, LT, 0f);
+        assertEdge(geometry, RB, 0f);
+        assertEdge(geometry, LB, 40f);
+        assertEdge(geometry, RT, 40f);
+    }
+
+    @Test
+    public void legacyDirectionsMoveByHalfTheShadow() {
+        assertOffsets(ShadowDirection.DIRECTION_NONE, 0f, 0f, 0f);
+        assertOffsets(ShadowDirection.DIRECTION_LEFT, 0f, -2f, 0f);
+        assertOffsets(ShadowDirection.DIRECTION_RIGHT, 0f, 2f, 0f);
+        assertOffsets(ShadowDirection.DIRECTION_TOP, 0f, 0f, -2f);
+        assertOffsets(ShadowDirection.DIRECTION_BOTTOM, 0f, 0f, 2f);
+        assertOffsets(ShadowDirection.DIRECTION_LT, 2f, -2f, -2f);
+        assertOffsets(ShadowDirection.DIRECTION_RT, 2f, 2f, -2f);
+        assertOffsets(ShadowDirection.DIRECTION_LB, -2f, -2f, 2f);
+        assertOffsets(ShadowDirection.DIRECTION_RB, -2f, 2f, 2f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownDirectionIsRejected() {
+        newGeometry(42);
+    }
+
+    @Test
+    public void shadowSizesAreRoundedToEvenValues() {
+        ShadowGeometry geometry = newGeometry(ShadowDirection.DIRECTION_NONE);
+
+        assertFalse(geometry.setShadowSize(4.4f, 5.6f));
+        assertTrue(geometry.setShadowSize(9f, 6f));
+        // the shadow can't grow past the max
+        assertEquals(6f, geometry.getRawShadowSize(), DELTA);
+        assertEquals(6f, geometry.getRawMaxShadowSize(), DELTA);
+    }
+
+    @Test
+    public void paddingMakesRoomForShadowAndCorners() {
+        ShadowGeometry geometry = newGeometry(ShadowDirection.DIRECTION_NONE);
+        double corner = (1 - Math.cos(Math.toRadians(45.0))) * 8;
+
+        assertEquals(6 + corner, geometry.getHorizontalPadding(), DELTA);
+        assertEquals(9 + corner, geometry.getVerticalPadding(), DELTA);
+        geometry.setAddPaddingForCorners(false);
+        assertEquals(6, geometry.getHorizontalPadding(), DELTA);
+        assertEquals(9, geometry.getVerticalPadding(), DELTA);
+    }
+
+    @Test
+    public void minimumSizeFitsBothCorners() {
+        ShadowGeometry geometry = newGeometry(ShadowDirection.DIRECTION_NONE);
+
+        // 2 * (8 + 1 + 6 / 2) + (6 + 1) * 2
+        assertEquals(38f, geometry.getMinWidth(), DELTA);
+        // 2 * (8 + 1 + 9 / 2) + (9 + 1) * 2
+        assertEquals(47f, geometry.getMinHeight(), DELTA);
+    }
+
+    @Test
+    public void everyCornerKeepsItsOwnRadius() {
+        ShadowGeometry geometry = newGeometry(ShadowDirection.DIRECTION_NONE);
+        geometry.setCornerRadii(4f, 8f, 12f, 0f);
+        geometry.build(0f, 0f, 100f, 80f);
+
+        assertFalse(geometry.isUniform());
+        assertEquals(12f, geometry.getCornerRadius(), DELTA);
+        assertCorner(geometry, LT, 13f, 16f, 0f, 4f);
+        assertCorner(geometry, RB, 79f, 56f, 180f, 12f);
+        assertCorner(geometry, LB, 9f, 68f, 270f, 0f);
+        assertCorner(geometry, RT, 83f, 20f, 90f, 8f);
+        for (int i = 0; i < ShadowGeometry.CORNER_COUNT; i++) {
+            float radius = corner(geometry, i, CORNER_RADIUS);
+            assertEquals(-radius - 7.5f, corner(geometry, i, CORNER_EDGE_TOP), DELTA);
+            assertEquals(-radius, corner(geometry, i, CORNER_EDGE_BOTTOM), DELTA);
+        }
+    }
+
+    @Test
+    public void mixedEdgesRunBetweenCornerCenters() {
+        ShadowGeometry geometry = newGeometry(ShadowDirection.DIRECTION_NONE);
+        geometry.setCornerRadii(4f, 8f, 12f, 0f);
+        geometry.build(0f, 0f, 100f, 80f);
+
+        // corner centers are 7, 11, 15 and 3px inside the 88x62 card
+        assertEdge(geometry, LT, 88f - 7f - 11f);
+        assertEdge(geometry, RB, 88f - 15f - 3f);
+        assertEdge(geometry, LB, 62f - 3f - 7f);
+        assertEdge(geometry, RT, 62f - 11f - 15f);
+    }
+
+    @Test
+    public void maskSquaresOffHiddenCorners() {
+        ShadowGeometry geometry = newGeometry(ShadowDirection.DIRECTION_NONE);
+        assertTrue(geometry.setCornerMask(CornerVisibility.toMask(CornerVisibility.NOLEFTCORNER)));
+        geometry.build(0f, 0f, 100f, 80f);
+
+        float[] resolved = geometry.getResolvedRadii();
+        assertEquals(0f, resolved[ShadowGeometry.RADIUS_LT], DELTA);
+        assertEquals(8f, resolved[ShadowGeometry.RADIUS_RT], DELTA);
+        assertEquals(8f, resolved[ShadowGeometry.RADIUS_RB], DELTA);
+        assertEquals(0f, resolved[ShadowGeometry.RADIUS_LB], DELTA);
+        // the radius set for the corner is kept for when the mask shows it again
+        assertEquals(8f, geometry.getCornerRadius(ShadowGeometry.RADIUS_LT), DELTA);
+        assertFalse(geometry.isUniform());
+        assertCorner(geometry, LT, 9f, 12f, 0f, 0f);
+        assertEdge(geometry, LT, 88f - 3f - 11f);
+        assertEdge(geometry, LB, 62f - 3f - 3f);
+    }
+
+    @Test
+    public void equalRadiiAreUniform() {
+        ShadowGeometry geometry = newGeometry(ShadowDirection.DIRECTION_NONE);
+
+        assertTrue(geometry.isUniform());
+        // rounded to the radius already set
+        assertFalse(geometry.setCornerRadii(7.6f, 8f, 8.2f, 8f));
+        assertTrue(geometry.setCornerRadii(8f, 8f, 8f, 2f));
+        assertFalse(geometry.isUniform());
+        assertTrue(geometry.setCornerRadius(8f));
+        assertTrue(geometry.isUniform());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeRadiusIsRejected() {
+        newGeometry(ShadowDirection.DIRECTION_NONE).setCornerRadii(4f, -1f, 4f, 4f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownCornerBitIsRejected() {
+        newGeometry(ShadowDirection.DIRECTION_NONE).setCornerMask(CornerVisibility.CORNER_ALL + 1);
+    }
+
+    @Test
+    public void rightAnglesMatchTheLegacyDirections() {
+        assertAngleMatches(0f, ShadowDirection.DIRECTION_RIGHT);
+        assertAngleMatches(90f, ShadowDirection.DIRECTION_BOTTOM);
+        assertAngleMatches(180f, ShadowDirection.DIRECTION_LEFT);
+        assertAngleMatches(270f, ShadowDirection.DIRECTION_TOP);
+        assertAngleMatches(-90f, ShadowDirection.DIRECTION_TOP);
+    }
+
+    @Test
+    public void diagonalAngleMovesTheCardAlongIt() {
+        ShadowGeometry geometry = newGeometry(ShadowDirection.DIRECTION_NONE);
+        assertTrue(geometry.setLightAngle(45f));
+        float move = (float) (2 * Math.cos(Math.toRadians(45.0)));
+
+        assertEquals(move, geometry.getMoveX(), DELTA);
+        assertEquals(move, geometry.getMoveY(), DELTA);
+        // the shadow stays centered under the card
+        assertEquals(0f, geometry.getDrawList()[DL_SHADOW_DY], DELTA);
+        assertFalse(geometry.setLightAngle(45f));
+    }
+
+    @Test
+    public void lightOffsetIsCappedAtHalfTheMaxShadow() {
+        ShadowGeometry geometry = newGeometry(ShadowDirection.DIRECTION_RIGHT);
+
+        assertTrue(geometry.setLightOffset(1f));
+        assertEquals(1f, geometry.getMoveX(), DELTA);
+        assertTrue(geometry.setLightOffset(10f));
+        assertEquals(3f, geometry.getMoveX(), DELTA);
+        // the cap follows the max shadow
+        geometry.setShadowSize(4f, 4f);
+        assertEquals(2f, geometry.getMoveX(), DELTA);
+    }
+
+    @Test
+    public void negativeLightOffsetFollowsTheShadow() {
+        ShadowGeometry geometry = newGeometry(ShadowDirection.DIRECTION_BOTTOM);
+        geometry.setLightOffset(1f);
+
+        assertTrue(geometry.setLightOffset(-5f));
+        assertEquals(2f, geometry.getMoveY(), DELTA);
+        assertFalse(geometry.setLightOffset(-1f));
+        geometry.setShadowSize(2f, 6f);
+        assertEquals(1f, geometry.getMoveY(), DELTA);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidAngleIsRejected() {
+        newGeometry(ShadowDirection.DIRECTION_NONE).setLightAngle(Float.NaN);
+    }
+
+    private static void assertCorner(ShadowGeometry geometry, int corner, float tx, float ty,
+                                     float rotation) {
+        assertCorner(geometry, corner, tx, ty, rotation, 8f);
+    }
+
+    private static void assertCorner(ShadowGeometry geometry, int corner, float tx, float ty,
+                                     float rotation, float radius) {
+        assertEquals("tx of corner " + corner, tx, corner(geometry, corner, CORNER_TX), DELTA);
+        assertEquals("ty of corner " + corner, ty, corner(geometry, corner, CORNER_TY), DELTA);
+        assertEquals("rotation of corner " + corner, rotation,
+                corner(geometry, corner, CORNER_ROTATION), DELTA);
+        assertEquals("radius of corner " + corner, radius,
+                corner(geometry, corner, CORNER_RADIUS), DELTA);
+    }
+
+    static void assertEdge(ShadowGeometry geometry, int corner, float length) {
+        assertEquals("edge after corner " + corner, length,
+                corner(geometry, corner, CORNER_EDGE_RIGHT), DELTA);
+        assertEquals("edge flag of corner " + corner, length > 0f ? 1f : 0f,
+                corner(geometry, corner, CORNER_HAS_EDGE), DELTA);
+    }
+
+    private static void assertAngleMatches(float degrees, int direction) {
+        ShadowGeometry expected = newGeometry(direction);
+        ShadowGeometry geometry = newGeometry(ShadowDirection.DIRECTION_NONE);
+        geometry.setLightAngle(degrees);
+        String message = "angle " + degrees;
+
+        assertEquals(message, expected.getMoveX(), geometry.getMoveX(), DELTA);
+        assertEquals(message, expected.getMoveY(), geometry.getMoveY(), DELTA);
+        for (int i = DL_SHADOW_DX; i <= DL_CARD_DY; i++) {
+            assertEquals(message, expected.getDrawList()[i], geometry.getDrawList()[i], DELTA);
+        }
+    }
+
+    private static void assertOffsets(int direction, float shadowDy, float cardDx, float cardDy) {
+        ShadowGeometry geometry = newGeometry(direction);
+        float[] drawList = geometry.getDrawList();
+        String message = "direction " + direction;
+
+        assertEquals(message, 0f, drawList[DL_SHADOW_DX], DELTA);
+        assertEquals(message, shadowDy, drawList[DL_SHADOW_DY], DELTA);
+        assertEquals(message, cardDx, drawList[DL_CARD_DX], DELTA);
+        assertEquals(message, cardDy, drawList[DL_CARD_DY], DELTA);
+    }
+}
@@ -0,0 +1,140 @@
+package com.xylitol.shadcardview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * declaration: on hardware accelerated canvases the shadow is recorded once into a RenderNode and
+ * replayed, until the shadow itself, the bounds or the alpha change. Counts the recordings through
+ * ShadowMetrics; the stand-in Build models an API 30 device.
+ * time:
+ */
+public class ShadowRenderNodeTest {
+
+    private final Canvas mCanvas = new Canvas();
+    private SRoundRectDrawableWithShadow mDrawable;
+
+    @Before
+    public void setUp() {
+        ShadowMetrics.setEnabled(true);
+        ShadowMetrics.reset();
+        mCanvas.setHardwareAccelerated(true);
+        mDrawable = new SRoundRectDrawableWithShadow(null, new Resources(3f),
+                ColorStateList.valueOf(0xFFFFFFFF), 24f, 12f, 12f, ShadowDirection.DIRECTION_TOP,
+                CornerVisibility.NONE, -1, -1);
+        mDrawable.setBounds(0, 0, 1080, 480);
+    }
+
+    @After
+    public void tearDown() {
+        ShadowMetrics.setEnabled(false);
+        ShadowMetrics.reset();
+    }
+
+    @Test
+    public void shadowIsRecordedOnceAndReplayed() {
+        drawFrames(3);
+
+        assertEquals(1L, ShadowMetrics.getShadowRecordingCount());
+    }
+
+    @Test
+    public void replayDrawsFewerOpsThanTheShadow() {
+        drawFrames(1);
+        mCanvas.reset();
+        mDrawable.draw(mCanvas);
+        int replayed = mCanvas.getOpCount(Canvas.OP_DRAW);
+
+        mCanvas.setHardwareAccelerated(false);
+        mCanvas.reset();
+        mDrawable.draw(mCanvas);
+        int drawn = mCanvas.getOpCount(Canvas.OP_DRAW);
+        assertTrue("replayed " + replayed + " draws, drawn " + drawn, replayed < drawn);
+    }
+
+    @Test
+    public void surfaceColorChangeReplaysTheShadow() {
+        drawFrames(1);
+        mDrawable.setColor(ColorStateList.valueOf(0xFFFF0000));
+        drawFrames(1);
+
+        assertEquals(1L, ShadowMetrics.getShadowRecordingCount());
+    }
+
+    @Test
+    public void boundsChangeRecordsAgain() {
+        drawFrames(1);
+        mDrawable.setBounds(0, 0, 1080, 600);
+        drawFrames(2);
+
+        assertEquals(2L, ShadowMetrics.getShadowRecordingCount());
+    }
+
+    @Test
+    public void shadowChangeRecordsAgain() {
+        drawFrames(1);
+        mDrawable.setShadowSize(6f);
+        drawFrames(1);
+        mDrawable.setShadowColor(0x37000000, 0x03000000);
+        drawFrames(1);
+
+        assertEquals(3L, ShadowMetrics.getShadowRecordingCount());
+    }
+
+    @Test
+    public void alphaChangeRecordsAgain() {
+        drawFrames(1);
+        mDrawable.setAlpha(128);
+        drawFrames(1);
+
+        assertEquals(2L, ShadowMetrics.getShadowRecordingCount());
+    }
+
+    @Test
+    public void softwareCanvasDrawsTheShadowDirectly() {
+        mCanvas.setHardwareAccelerated(false);
+        drawFrames(2);
+
+        assertEquals(0L, ShadowMetrics.getShadowRecordingCount());
+    }
+
+    @Test
+    public void disabledRenderNodeDrawsTheShadowDirectly() {
+        drawFrames(1);
+        mDrawable.setUseRenderNode(false);
+        drawFrames(2);
+        mDrawable.setUseRenderNode(true);
+        drawFrames(1);
+
+        // turning it back on starts from a new recording
+        assertEquals(2L, ShadowMetrics.getShadowRecordingCount());
+    }
+
+    @Test
+    public void replayDoesNotAllocate() {
+        AllocationMeter meter = new AllocationMeter();
+        // metrics are off in production, their timing isn't part of the draw
+        ShadowMetrics.setEnabled(false);
+        drawFrames(2);
+
+        long start = meter.start();
+        drawFrames(1000);
+        long allocated = meter.allocatedSince(start);
+        assertEquals("bytes allocated by 1000 replays", 0L, allocated);
+    }
+
+    private void drawFrames(int frames) {
+        for (int i = 0; i < frames; i++) {
+            mCanvas.reset();
+            mDrawable.draw(mCanvas);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.xylitol.shadcardview;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.res.ColorStateList;
+import android.content.res.Resources;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import org.junit.Test;
+
+/**
+ * declaration: drawables created from the same constant state share it until they are mutated.
+ * A change made through one of them must reach the geometry of the others before they are drawn
+ * or measured again, and must not reach the ones that were mutated.
+ * time:
+ */
+public class ShadowStateTest {
+
+    private static SRoundRectDrawableWithShadow newCard() {
+        SRoundRectDrawableWithShadow card = new SRoundRectDrawableWithShadow(null,
+                new Resources(3f), ColorStateList.valueOf(0xFFFFFFFF), 8f, 4f, 6f,
+                ShadowDirection.DIRECTION_TOP, CornerVisibility.NONE, -1, -1);
+        card.setBounds(0, 0, 640, 320);
+        return card;
+    }
+
+    private static SRoundRectDrawableWithShadow cloneOf(SRoundRectDrawableWithShadow card) {
+        SRoundRectDrawableWithShadow clone =
+                (SRoundRectDrawableWithShadow) card.getConstantState().newDrawable();
+        clone.setBounds(card.getBounds());
+        return clone;
+    }
+
+    @Test
+    public void sharedStateChangesReachTheOtherDrawables() {
+        SRoundRectDrawableWithShadow card = newCard();
+        SRoundRectDrawableWithShadow clone = cloneOf(card);
+        clone.draw(new Canvas());
+
+        card.setCornerRadius(24f);
+        card.setMaxShadowSize(12f);
+        card.setShadowSize(10f);
+        card.setLightAngle(0f);
+
+        assertSameGeometry(card, clone);
+        assertEquals(24f, clone.getCornerRadius(), 0f);
+        assertEquals(10f, clone.getShadowSize(), 0f);
+    }
+
+    @Test
+    public void changesOfEitherDrawableAddUp() {
+        SRoundRectDrawableWithShadow card = newCard();
+        SRoundRectDrawableWithShadow clone = cloneOf(card);
+
+        card.setCornerRadius(24f);
+        // the clone hasn't applied the radius yet, its own change must keep it
+        clone.setMaxShadowSize(12f);
+
+        assertSameGeometry(card, clone);
+        assertEquals(24f, card.getCornerRadius(), 0f);
+        assertEquals(12f, card.getMaxShadowSize(), 0f);
+    }
+
+    @Test
+    public void mutatedDrawablesKeepTheirOwnState() {
+        SRoundRectDrawableWithShadow card = newCard();
+        SRoundRectDrawableWithShadow clone = cloneOf(card);
+        card.setCornerRadius(24f);
+        clone.mutate();
+
+        card.setCornerRadius(2f);
+        clone.draw(new Canvas());
+
+        // the mutated clone got the change made before it was mutated, not the one after
+        assertEquals(24f, clone.getCornerRadius(), 0f);
+        assertEquals(2f, card.getCornerRadius(), 0f);
+    }
+
+    private static void assertSameGeometry(SRoundRectDrawableWithShadow expected,
+                                           SRoundRectDrawableWithShadow actual) {
+        Rect expectedPadding = new Rect();
+        Rect actualPadding = new Rect();
+        expected.getPadding(expectedPadding);
+        actual.getPadding(actualPadding);
+        assertEquals("padding", expectedPadding, actualPadding);
+        assertEquals("min width", expected.getMinWidth(), actual.getMinWidth(), 0f);
+        assertEquals("min height", expected.getMinHeight(), actual.getMinHeight(), 0f);
+
+        Canvas canvas = new Canvas();
+        expected.draw(canvas);
+        actual.draw(canvas);
+        assertEquals("move x", expected.getMoveX(), actual.getMoveX(), 0f);
+        assertEquals("move y", expected.getMoveY(), actual.getMoveY(), 0f);
+        RectF expectedBounds = expected.getCardRectSize();
+        RectF actualBounds = actual.getCardRectSize();
+        assertEquals("card left", expectedBounds.left, actualBounds.left, 0f);
+        assertEquals("card top", expectedBounds.top, actualBounds.top, 0f);
+        assertEquals("card right", expectedBounds.right, actualBounds.right, 0f);
+        assertEquals("card bottom", expectedBounds.bottom, actualBounds.bottom, 0f);
+    }
+}